@@ -3,10 +3,10 @@ package jenkinsci.plugin.browseraxis;
 import hudson.Extension;
 import hudson.slaves.SlaveComputer;
 import hudson.util.FormValidation;
+import hudson.util.ListBoxModel;
 import java.io.File;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -14,8 +14,8 @@ import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeMap;
 import java.util.TreeSet;
-import java.util.logging.Level;
-import java.util.logging.Logger;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 import javax.servlet.ServletException;
 import hudson.model.Computer;
 import hudson.model.Describable;
@@ -24,8 +24,14 @@ import hudson.model.Hudson;
 import hudson.model.LabelFinder;
 import hudson.model.Node;
 import hudson.model.labels.LabelAtom;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
 import jenkinsci.plugin.browseraxis.label.BrowserFinder;
+import jenkinsci.plugin.browseraxis.label.ComputerFacts;
+import jenkinsci.plugin.browseraxis.label.NodeInventory;
+import jenkinsci.plugin.browseraxis.label.NodeLabels;
+import jenkinsci.plugin.browseraxis.label.UnixOsInventory;
+import jenkinsci.plugin.browseraxis.label.VersionDetector;
+import jenkinsci.plugin.browseraxis.label.WriteBehind;
 import net.sf.json.JSONArray;
 import net.sf.json.JSONObject;
 import org.kohsuke.stapler.DataBoundConstructor;
@@ -39,6 +45,12 @@ import org.kohsuke.stapler.StaplerRequest;
  */
 public class Browser implements Describable<Browser>, Comparable {
 
+    /**
+     * Pattern of version which is used if browser does not define its own, groups are major and minor number
+     */
+    public static final String DEFAULT_VERSION_PATTERN = "(\\d+)\\.(\\d+)";
+    public static final String GRANULARITY_MAJOR = "major";
+    public static final String GRANULARITY_MINOR = "minor";
     private String name;
     Set<BrowserVersion> versions;
     private String suffixUnix;
@@ -51,10 +63,13 @@ public class Browser implements Describable<Browser>, Comparable {
     private String defaultPathUnix;
     private String findVersionCommandUnix;
     private String findVersionCommandWindows;
+    private String versionPattern;
+    private String versionGranularity;
 
     @DataBoundConstructor
     public Browser(String name, Set<BrowserVersion> version, boolean useSuffixs, String suffixWindows, String suffixUnix, Set<String> unixOsForSuffix,
-            boolean autoCreatingVersionsWindows, boolean autoCreatingVersionsUnix, String defaultPathWindows, String defaultPathUnix, String findVersionCommandUnix, String findVersionCommandWindows) {
+            boolean autoCreatingVersionsWindows, boolean autoCreatingVersionsUnix, String defaultPathWindows, String defaultPathUnix, String findVersionCommandUnix, String findVersionCommandWindows,
+            String versionPattern, String versionGranularity) {
         this.name = name;
         this.versions = version;
         this.suffixUnix = suffixUnix;
@@ -67,6 +82,8 @@ public class Browser implements Describable<Browser>, Comparable {
         this.defaultPathUnix = defaultPathUnix;
         this.findVersionCommandUnix = findVersionCommandUnix;
         this.findVersionCommandWindows = findVersionCommandWindows;
+        this.versionPattern = (versionPattern == null || versionPattern.length() == 0) ? null : versionPattern;
+        this.versionGranularity = versionGranularity;
     }
 
     public String getFindVersionCommand(Computer computer) {
@@ -89,7 +106,7 @@ public class Browser implements Describable<Browser>, Comparable {
     public String getDefaultPath(Computer computer) throws InterruptedException, IOException {
         if (computer instanceof SlaveComputer) {
             if (((SlaveComputer) computer).isUnix()) {
-                if (useSuffixs && unixsForSuffix.contains((String) computer.getSystemProperties().get("os.name"))) {
+                if (useSuffixs && unixsForSuffix.contains(ComputerFacts.of(computer).getOsName())) {
                     return (defaultPathUnix + suffixUnix);
                 }
                 return defaultPathUnix;
@@ -108,9 +125,20 @@ public class Browser implements Describable<Browser>, Comparable {
      * 
      */
     public void addVersion(BrowserVersion version) {
-        versions.add(version);
         DescriptorImpl des = (DescriptorImpl) getDescriptor();
-        des.getMapBrowsers().put(this, versions);
+        des.addVersion(this, version);
+    }
+
+    /**
+     * Create copy of this browser which contains given version too. This browser is not changed.
+     * 
+     * @return copy of browser with given version
+     */
+    public Browser withVersion(BrowserVersion version) {
+        Set<BrowserVersion> newVersions = new TreeSet<BrowserVersion>(versions);
+        newVersions.add(version);
+        return new Browser(name, newVersions, useSuffixs, suffixWindows, suffixUnix, unixsForSuffix, autoCreatingVersionsWindows, autoCreatingVersionsUnix,
+                defaultPathWindows, defaultPathUnix, findVersionCommandUnix, findVersionCommandWindows, versionPattern, versionGranularity);
     }
 
      /**
@@ -158,6 +186,39 @@ public class Browser implements Describable<Browser>, Comparable {
         return name;
     }
 
+    /**
+     * Return regular expression set by user, its groups are major and minor number
+     * 
+     * @return pattern of version or null if the default pattern is used
+     */
+    public String getVersionPattern() {
+        return versionPattern;
+    }
+
+    /**
+     * Return regular expression which finds version in output of command
+     * 
+     * @return pattern of version set by user or the default pattern
+     */
+    public String getEffectiveVersionPattern() {
+        if (versionPattern == null || versionPattern.length() == 0) {
+            return DEFAULT_VERSION_PATTERN;
+        }
+        return versionPattern;
+    }
+
+    /**
+     * Return which part of version is used in name of auto created version (major or minor)
+     * 
+     * @return granularity of auto created versions
+     */
+    public String getVersionGranularity() {
+        if (GRANULARITY_MINOR.equals(versionGranularity)) {
+            return GRANULARITY_MINOR;
+        }
+        return GRANULARITY_MAJOR;
+    }
+
     public boolean getUseSuffixs() {
         return useSuffixs;
     }
@@ -175,7 +236,16 @@ public class Browser implements Describable<Browser>, Comparable {
     }
 
     public Set<BrowserVersion> getVersions() {
-        return versions;
+        return Collections.unmodifiableSet(versions);
+    }
+
+    /**
+     * Return detectors which can find version of default browser without launching of it
+     * 
+     * @return detectors of version
+     */
+    public List<VersionDetector> getVersionDetectors() {
+        return VersionDetector.all();
     }
 
     public Set<BrowserVersion> getNotAutoCreatedVersions() {
@@ -215,14 +285,32 @@ public class Browser implements Describable<Browser>, Comparable {
     @Extension
     public static class DescriptorImpl extends Descriptor<Browser> {
 
+        // Browsers in form in which they are saved, they are read from catalog
         private Map<Browser, Set<BrowserVersion>> browsers = new TreeMap<Browser, Set<BrowserVersion>>();
-        private static Set<String> unixOS = new TreeSet<String>();
-        // Name of slaves and their browser labels
-        // Map of slaves nad thir browser labels are saved here for performance purposes.
-        private Map<String, Set<String>> slaveLabels = new ConcurrentHashMap<String, Set<String>>();
+        // Name of slaves and their browser labels, it is used only for loading of settings saved by older version.
+        // Browser labels of slaves are saved separately by NodeInventory.
+        private Map<String, Set<String>> slaveLabels;
+        // Snapshot of browsers and versions, any change replaces it by new snapshot
+        private transient final AtomicReference<BrowserCatalog> catalog = new AtomicReference<BrowserCatalog>();
+        private transient final WriteBehind writer = new WriteBehind(this);
 
         public DescriptorImpl() {
             load();
+            catalog.set(new BrowserCatalog(browsers));
+            if (slaveLabels != null && NodeInventory.get().importLabels(slaveLabels)) {
+                slaveLabels = null; // labels are kept until they are saved by NodeInventory
+                save();
+            }
+        }
+
+        @Override
+        public synchronized void save() {
+            Map<Browser, Set<BrowserVersion>> savedBrowsers = new TreeMap<Browser, Set<BrowserVersion>>();
+            for (Entry<Browser, Set<BrowserVersion>> entry : getCatalog().getMapBrowsers().entrySet()) {
+                savedBrowsers.put(entry.getKey(), new TreeSet<BrowserVersion>(entry.getValue()));
+            }
+            browsers = savedBrowsers;
+            super.save();
         }
 
         @Override
@@ -238,55 +326,54 @@ public class Browser implements Describable<Browser>, Comparable {
                     }
                 }
             }
-            browsers = newBrowsers;
-            checkNodes(); //delete unused nodes
+            catalog.set(new BrowserCatalog(newBrowsers));
             BrowserFinder finder = LabelFinder.all().get(BrowserFinder.class);
             finder.setActualizationOfBrowsers(); // nodes will actualize their browser labes according to new settings
             save();
             return true;
         }
 
-        public Map<String, Set<String>> getSlaveLables() {
-            return slaveLabels;
-        }
-        
         /**
-         * Check compatibility with names of nodes with nodes contained in Hudson
-         * 
-         * @return set of browsers
+         * Return current snapshot of browsers and versions
          * 
          */
-        public void checkNodes() {
-            if (Hudson.getInstance().getNodes().size() + 1 < slaveLabels.keySet().size()) {
-                deleteUnusedNodes();
-            }
+        public BrowserCatalog getCatalog() {
+            return catalog.get();
         }
 
         /**
-         * Delete nodes which does not exist.
+         * Add version to browser. If the snapshot is changed by another thread, adding is repeated with the new snapshot.
          * 
          */
-        public void deleteUnusedNodes() {
-            Iterator<Entry<String, Set<String>>> it = slaveLabels.entrySet().iterator();
-            while (it.hasNext()) {
-                Entry<String, Set<String>> st = it.next();
-                if (Hudson.getInstance().getNode(st.getKey()) == null && (!Hudson.getInstance().getDisplayName().equals(st.getKey()))) {
-                    it.remove();
+        public void addVersion(Browser browser, BrowserVersion version) {
+            while (true) {
+                BrowserCatalog current = catalog.get();
+                BrowserCatalog next = current.withVersion(browser.getName(), version);
+                if (next == current) {
+                    return;
+                }
+                if (catalog.compareAndSet(current, next)) {
+                    writer.markDirty(); // new versions are saved later together
+                    return;
                 }
             }
         }
 
+        /**
+         * Delete browser labels of node which was removed
+         * 
+         */
+        public void removeNode(String nodeName) {
+            NodeInventory.get().remove(nodeName);
+        }
+
         /**
          * Return all kinds of Unix systems, which has ever been on Hudson slaves
          * 
          * @return set of names of Unix systems
          */
         public static Set<String> getUnixOs() {
-            if (unixOS == null) {
-                return getConnectedUnixOs();
-            }
-            unixOS.addAll(getConnectedUnixOs());
-            return unixOS;
+            return UnixOsInventory.get().getUnixOs();
         }
 
         /**
@@ -348,9 +435,12 @@ public class Browser implements Describable<Browser>, Comparable {
                 defaultPathUnix = json.getString("defaultPathUnix");
                 findVersionCommandUnix = json.getString("findVersionCommandUnix");
             }
+            String versionPattern = json.optString("versionPattern", null);
+            String versionGranularity = json.optString("versionGranularity", GRANULARITY_MAJOR);
             versions = new TreeSet<BrowserVersion>();
             setVersion(json, versions);
-            Browser b = new Browser(type, versions, useSuffixs, suffixWindows, suffixUnix, unixsForSuffix, autoCreatingVersionsWindows, autoCreatingVersionsUnix, defaultPathWindows, defaultPathUnix, findVersionCommandUnix, findVersionCommandWindows);
+            Browser b = new Browser(type, versions, useSuffixs, suffixWindows, suffixUnix, unixsForSuffix, autoCreatingVersionsWindows, autoCreatingVersionsUnix, defaultPathWindows, defaultPathUnix, findVersionCommandUnix, findVersionCommandWindows,
+                    versionPattern, versionGranularity);
             newBrowsers.put(b, b.getVersions());
         }
 
@@ -362,6 +452,27 @@ public class Browser implements Describable<Browser>, Comparable {
             return FormValidation.ok();
         }
 
+        public FormValidation doCheckVersionPattern(@QueryParameter String value) {
+            if (value.length() == 0) {
+                return FormValidation.ok();
+            }
+            try {
+                if (Pattern.compile(value).matcher("").groupCount() < 1) {
+                    return FormValidation.error("Pattern must contain group for major number of version");
+                }
+            } catch (PatternSyntaxException ex) {
+                return FormValidation.error("Incorrect pattern: " + ex.getDescription());
+            }
+            return FormValidation.ok();
+        }
+
+        public ListBoxModel doFillVersionGranularityItems() {
+            ListBoxModel items = new ListBoxModel();
+            items.add("Major version (firefox-17-auto)", GRANULARITY_MAJOR);
+            items.add("Major and minor version (firefox-17.0-auto)", GRANULARITY_MINOR);
+            return items;
+        }
+
         public FormValidation doCheckPath(@QueryParameter String value)
                 throws IOException, ServletException {
             if (value.length() == 0) {
@@ -381,7 +492,7 @@ public class Browser implements Describable<Browser>, Comparable {
          * 
          */
         public Set<Browser> getBrowsers() {
-            return browsers.keySet();
+            return getCatalog().getBrowsers();
         }
 
         /**
@@ -391,7 +502,7 @@ public class Browser implements Describable<Browser>, Comparable {
          * 
          */
         public Map<Browser, Set<BrowserVersion>> getMapBrowsers() {
-            return browsers;
+            return getCatalog().getMapBrowsers();
         }
 
         /**
@@ -401,32 +512,38 @@ public class Browser implements Describable<Browser>, Comparable {
          * 
          */
         public BrowserVersion getBrowserVersionByName(String name) {
-            BrowserVersion version = null;
-            for (Set<BrowserVersion> versions : browsers.values()) {
-                for (BrowserVersion v : versions) {
-                    if (v.getVersionName().equals(name)) {
-                        version = v;
-                    }
-                }
-            }
-            return version;
+            return getCatalog().getBrowserVersionByName(name);
         }
 
         /**
-         * Get browser labels for given node. If the slave is not contained this node add it with empty set of browser labels
+         * Get browser labels for given node. Labels are created only once for each change of labels of the node.
          * 
          * @return set of browser labels
          * 
          */
         public Set<LabelAtom> getLabelsOfNode(Node node) {
-            if (!slaveLabels.containsKey(node.getDisplayName())) {
-                slaveLabels.put(node.getDisplayName(), new TreeSet<String>());
-            }
-            Set<LabelAtom> atoms = new TreeSet<LabelAtom>();
-            for (String st : slaveLabels.get(node.getDisplayName())) {
-                atoms.add(Hudson.getInstance().getLabelAtom(st));
-            }
-            return atoms;
+            return getNodeLabels(node.getDisplayName()).getAtoms();
+        }
+
+        /**
+         * Get browser labels for node with given name together with their generation
+         * 
+         * @return browser labels of node
+         * 
+         */
+        public NodeLabels getNodeLabels(String nodeName) {
+            return NodeInventory.get().getNodeLabels(nodeName);
+        }
+
+        /**
+         * Publish new browser labels of node
+         * 
+         * @return previous browser labels of node
+         * @throws InterruptedException if it is interrupted while labels of nodes are loaded
+         * 
+         */
+        public Set<String> setLabelsOfNode(String nodeName, Set<String> labels) throws InterruptedException {
+            return NodeInventory.get().setLabelsOfNode(nodeName, labels);
         }
 
         /**
@@ -436,13 +553,7 @@ public class Browser implements Describable<Browser>, Comparable {
          * 
          */
         public Browser findBrowserByName(String name) {
-            Browser browser = null;
-            for (Browser b : getBrowsers()) {
-                if (b.getName().equals(name)) {
-                    browser = b;
-                }
-            }
-            return browser;
+            return getCatalog().findBrowserByName(name);
         }
 
          /**
@@ -452,11 +563,7 @@ public class Browser implements Describable<Browser>, Comparable {
          * 
          */
         public List<BrowserVersion> getAllBrowserVersions() {
-            List<BrowserVersion> versions = new ArrayList<BrowserVersion>();
-            for (Set<BrowserVersion> versionList : browsers.values()) {
-                versions.addAll(versionList);
-            }
-            return versions;
+            return getCatalog().getAllBrowserVersions();
         }
 
          /**
@@ -466,12 +573,7 @@ public class Browser implements Describable<Browser>, Comparable {
          * 
          */
         public Browser getBrowserOfVersion(BrowserVersion version) {
-            for (Browser browser : browsers.keySet()) {
-                if (browser.getVersions().contains(version)) {
-                    return browser;
-                }
-            }
-            return null;
+            return getCatalog().getBrowserOfVersion(version);
         }
 
         @Override
@@ -486,25 +588,7 @@ public class Browser implements Describable<Browser>, Comparable {
          * 
          */
         public static SortedSet<String> getConnectedUnixOs() {
-            SortedSet<String> unixOs = new TreeSet<String>();
-            for (Node node : Hudson.getInstance().getNodes()) {
-                if (node.toComputer() != null) {
-                    if (node.toComputer() instanceof SlaveComputer && node.toComputer().isOnline()) {
-                        SlaveComputer slave = (SlaveComputer) node.toComputer();
-                        if (slave.isUnix()) {
-                            try {
-                                String string = (String) slave.getSystemProperties().get("os.name");
-                                unixOs.add(string);
-                            } catch (IOException ex) {
-                                Logger.getLogger(Browser.class.getName()).log(Level.SEVERE, null, ex);
-                            } catch (InterruptedException ex) {
-                                Logger.getLogger(Browser.class.getName()).log(Level.SEVERE, null, ex);
-                            }
-                        }
-                    }
-                }
-            }
-            return unixOs;
+            return UnixOsInventory.get().getConnectedUnixOs();
         }
     }
 }
@@ -41,7 +41,7 @@ public class BrowserAxis extends LabelAxis implements BrowserVariableSetter{
         String path = version.getPath(node.toComputer(), descriptor.getBrowserOfVersion(version)); //get path for this node
         try {
             path = FindBrowsersOnNode.parsePath(node.toComputer(), path); //replace system variable of node by their values
-            log.println("Set browser " + version.getVersionName() + " with path " + FindBrowsersOnNode.parsePath(node.toComputer(), path));
+            log.println("Set browser " + version.getVersionName() + " with path " + path);
         } catch (IOException ex) {
             Logger.getLogger(BrowserAxis.class.getName()).log(Level.SEVERE, null, ex);
         } catch (InterruptedException ex) {
@@ -0,0 +1,93 @@
+package jenkinsci.plugin.browseraxis;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Immutable snapshot of browsers and their versions with index by name. Any change creates new snapshot,
+ * so it can be read by many threads without locking.
+ * 
+ * @author Lucie Votypkova
+ */
+public final class BrowserCatalog {
+
+    private final SortedMap<Browser, Set<BrowserVersion>> browsers;
+    private final List<BrowserVersion> allVersions;
+    private final Map<String, Browser> browsersByName;
+    private final Map<String, BrowserVersion> versionsByName;
+    // Name of version and browser which the version belongs to
+    private final Map<String, Browser> browsersByVersionName;
+
+    public BrowserCatalog(Map<Browser, Set<BrowserVersion>> browsers) {
+        SortedMap<Browser, Set<BrowserVersion>> map = new TreeMap<Browser, Set<BrowserVersion>>();
+        List<BrowserVersion> versions = new ArrayList<BrowserVersion>();
+        Map<String, Browser> browserIndex = new HashMap<String, Browser>();
+        Map<String, BrowserVersion> versionIndex = new HashMap<String, BrowserVersion>();
+        Map<String, Browser> browserOfVersionIndex = new HashMap<String, Browser>();
+        if (browsers != null) {
+            for (Map.Entry<Browser, Set<BrowserVersion>> entry : browsers.entrySet()) {
+                Browser browser = entry.getKey();
+                map.put(browser, Collections.unmodifiableSet(new TreeSet<BrowserVersion>(entry.getValue())));
+                browserIndex.put(browser.getName(), browser);
+                for (BrowserVersion version : entry.getValue()) {
+                    versions.add(version);
+                    versionIndex.put(version.getVersionName(), version);
+                    browserOfVersionIndex.put(version.getVersionName(), browser);
+                }
+            }
+        }
+        this.browsers = Collections.unmodifiableSortedMap(map);
+        this.allVersions = Collections.unmodifiableList(versions);
+        this.browsersByName = Collections.unmodifiableMap(browserIndex);
+        this.versionsByName = Collections.unmodifiableMap(versionIndex);
+        this.browsersByVersionName = Collections.unmodifiableMap(browserOfVersionIndex);
+    }
+
+    /**
+     * Create new snapshot which contains given version of browser with given name
+     * 
+     * @return new snapshot or this snapshot if there is not such browser or it already contains the version
+     */
+    public BrowserCatalog withVersion(String browserName, BrowserVersion version) {
+        Browser browser = browsersByName.get(browserName);
+        if (browser == null || browser.getVersions().contains(version)) {
+            return this;
+        }
+        Browser newBrowser = browser.withVersion(version);
+        Map<Browser, Set<BrowserVersion>> map = new TreeMap<Browser, Set<BrowserVersion>>(browsers);
+        map.remove(browser);
+        map.put(newBrowser, newBrowser.getVersions());
+        return new BrowserCatalog(map);
+    }
+
+    public SortedMap<Browser, Set<BrowserVersion>> getMapBrowsers() {
+        return browsers;
+    }
+
+    public Set<Browser> getBrowsers() {
+        return browsers.keySet();
+    }
+
+    public List<BrowserVersion> getAllBrowserVersions() {
+        return allVersions;
+    }
+
+    public Browser findBrowserByName(String name) {
+        return browsersByName.get(name);
+    }
+
+    public BrowserVersion getBrowserVersionByName(String name) {
+        return versionsByName.get(name);
+    }
+
+    public Browser getBrowserOfVersion(BrowserVersion version) {
+        return browsersByVersionName.get(version.getVersionName());
+    }
+}
@@ -1,7 +1,6 @@
 package jenkinsci.plugin.browseraxis;
 
 
-import antlr.ANTLRException;
 import hudson.EnvVars;
 import hudson.Extension;
 import hudson.matrix.LabelExpAxis;
@@ -11,6 +10,7 @@ import hudson.util.VariableResolver;
 import java.io.IOException;
 import java.io.PrintStream;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
@@ -23,7 +23,11 @@ import hudson.model.Label;
 import hudson.model.LabelFinder;
 import hudson.model.Node;
 import jenkinsci.plugin.browseraxis.label.BrowserFinder;
+import jenkinsci.plugin.browseraxis.label.CompiledExpression;
 import jenkinsci.plugin.browseraxis.label.FindBrowsersOnNode;
+import jenkinsci.plugin.browseraxis.label.LabelDictionary;
+import jenkinsci.plugin.browseraxis.label.NodeInventory;
+import jenkinsci.plugin.browseraxis.label.NodeLabels;
 import net.sf.json.JSONObject;
 import org.kohsuke.stapler.DataBoundConstructor;
 import org.kohsuke.stapler.QueryParameter;
@@ -62,17 +66,11 @@ public class BrowserExpAxis extends LabelExpAxis implements BrowserVariableSette
     
 
     public void setEnviromentVariables(String value, EnvVars envVar, PrintStream log, Node node){       
-        Label label = null;
-        try {
-            label = Label.parseExpression(value);
-        } catch (ANTLRException ex) {
-            Logger.getLogger(BrowserAxis.class.getName()).log(Level.SEVERE, null, ex);
-        }
-        BrowserVersion version = getBrowserVersion(label, node);
+        BrowserVersion version = getBrowserVersion(value, node);
         String path = version.getPath(node.toComputer(), ((Browser.DescriptorImpl) Hudson.getInstance().getDescriptorOrDie(Browser.class)).getBrowserOfVersion(version));
         try {
             path = FindBrowsersOnNode.parsePath(node.toComputer(), path);
-            log.println("Set browser " + version.getVersionName() + " with path " + FindBrowsersOnNode.parsePath(node.toComputer(), path));
+            log.println("Set browser " + version.getVersionName() + " with path " + path);
         } catch (IOException ex) {
             Logger.getLogger(BrowserAxis.class.getName()).log(Level.SEVERE, null, ex);
         } catch (InterruptedException ex) {
@@ -85,6 +83,28 @@ public class BrowserExpAxis extends LabelExpAxis implements BrowserVariableSette
         envVar.put("BROWSER_AXIS_PATH", path);
     }
 
+    /**
+     * Find version of browser for given expression and node. Version which was found before is used if browser labels of the node
+     * and browsers were not changed.
+     * 
+     * @return version which suits given expression
+     */
+    private BrowserVersion getBrowserVersion(String expression, Node node) {
+        Browser.DescriptorImpl descriptor = (Browser.DescriptorImpl) Hudson.getInstance().getDescriptorOrDie(Browser.class);
+        ExpressionCache cache = ExpressionCache.get();
+        NodeInventory.get().awaitLoaded(); // build can wait for a while for labels of its node
+        NodeLabels labels = descriptor.getNodeLabels(node.getDisplayName());
+        BrowserCatalog catalog = descriptor.getCatalog();
+        BrowserVersion version = labels.isLoading() ? null : cache.getResolved(expression, node.getDisplayName(), labels.getGeneration(), catalog);
+        if (version == null) {
+            version = getBrowserVersion(cache.parse(expression), cache.compile(expression), node);
+            if (!labels.isLoading()) {
+                cache.putResolved(expression, node.getDisplayName(), labels.getGeneration(), catalog, version);
+            }
+        }
+        return version;
+    }
+
     /**
      * Find version of browser for given label expression and node
      * 
@@ -92,10 +112,18 @@ public class BrowserExpAxis extends LabelExpAxis implements BrowserVariableSette
      * @return Label which suits given expression
      * @throws IllegalArgumentException if there is not any version for given label expression and node
      */
-    private BrowserVersion getBrowserVersion(Label label, Node node) {
+    private BrowserVersion getBrowserVersion(Label label, CompiledExpression compiled, Node node) {
         Browser.DescriptorImpl descriptor = (Browser.DescriptorImpl) Hudson.getInstance().getDescriptorOrDie(Browser.class);
-        BrowserFinder finder = LabelFinder.all().get(BrowserFinder.class);
-        LabelAtom atom = findLabelAtomForExpression(label, finder.findLabels(node));//find the first label which is contained in node`s labels and match label expression
+        LabelAtom atom;
+        if (compiled != null) {
+            atom = compiled.firstMatchingLabel(descriptor.getNodeLabels(node.getDisplayName()));
+            if (atom == null) {
+                throw new IllegalArgumentException("There not browser for epression " + label.getDisplayName() + " but should be, it is probably bug");
+            }
+        } else {
+            BrowserFinder finder = LabelFinder.all().get(BrowserFinder.class);
+            atom = findLabelAtomForExpression(label, finder.findLabels(node));//find the first label which is contained in node`s labels and match label expression
+        }
         BrowserVersion version = (descriptor).getBrowserVersionByName(atom.getName());
         if (version == null) {
             Browser browser = (descriptor.findBrowserByName(atom.getName()));
@@ -131,7 +159,15 @@ public class BrowserExpAxis extends LabelExpAxis implements BrowserVariableSette
      * @throws IllegalArgumentException if there is not any version of browser with label which is assigned to given node
      */
     private LabelAtom findLabelAtomForBrowser(Browser browser, Node node) {
+        Browser.DescriptorImpl descriptor = (Browser.DescriptorImpl) Hudson.getInstance().getDescriptorOrDie(Browser.class);
+        NodeLabels labels = descriptor.getNodeLabels(node.getDisplayName());
         for (BrowserVersion version : browser.getVersions()) {
+            if (labels.contains(version.getVersionName())) {
+                return Hudson.getInstance().getLabelAtom(version.getVersionName());
+            }
+        }
+        for (BrowserVersion version : browser.getVersions()) {
+            // label can be assigned to node also by its configuration
             LabelAtom atom = Hudson.getInstance().getLabelAtom(version.getVersionName());
             if (node.getAssignedLabels().contains(atom)) {
                 return atom;
@@ -203,6 +239,14 @@ public class BrowserExpAxis extends LabelExpAxis implements BrowserVariableSette
                 }
             }
             wrongExpression = null;
+            if (NodeInventory.get().isLoaded()) {
+                for (String expression : list) {
+                    CompiledExpression compiled = ExpressionCache.get().compile(expression);
+                    if (compiled != null && compiled.matchingNodes().isEmpty()) {
+                        return FormValidation.warning(expression + " expression does not match browser of any node yet");
+                    }
+                }
+            }
             return FormValidation.ok();
         }
 
@@ -210,12 +254,11 @@ public class BrowserExpAxis extends LabelExpAxis implements BrowserVariableSette
             if (expression == null) {
                 return true;
             }
-            Label label = null;
-            try {
-                label = Label.parseExpression(expression);
-            } catch (ANTLRException ex) {
-                Logger.getLogger(BrowserExpAxis.class.getName()).log(Level.SEVERE, null, ex);
+            CompiledExpression compiled = ExpressionCache.get().compile(expression);
+            if (compiled != null) {
+                return !compiled.matchingLabels(getBrowserLabels()).isEmpty();
             }
+            Label label = ExpressionCache.get().parse(expression);
             Browser.DescriptorImpl descriptor = ((Browser.DescriptorImpl) Hudson.getInstance().getDescriptorOrDie(Browser.class));
             Map<Browser, Set<BrowserVersion>> map = descriptor.getMapBrowsers();
             for (Browser browser : map.keySet()) {
@@ -234,5 +277,22 @@ public class BrowserExpAxis extends LabelExpAxis implements BrowserVariableSette
             }
             return false;
         }
+
+        /**
+         * Return numbers of labels of all browsers and their versions
+         * 
+         */
+        private BitSet getBrowserLabels() {
+            Browser.DescriptorImpl descriptor = ((Browser.DescriptorImpl) Hudson.getInstance().getDescriptorOrDie(Browser.class));
+            LabelDictionary dictionary = LabelDictionary.get();
+            BitSet labels = new BitSet();
+            for (Map.Entry<Browser, Set<BrowserVersion>> entry : descriptor.getMapBrowsers().entrySet()) {
+                labels.set(dictionary.getId(entry.getKey().getName()));
+                for (BrowserVersion version : entry.getValue()) {
+                    labels.set(dictionary.getId(version.getVersionName()));
+                }
+            }
+            return labels;
+        }
     }
 }
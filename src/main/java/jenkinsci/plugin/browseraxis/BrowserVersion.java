@@ -1,11 +1,11 @@
 package jenkinsci.plugin.browseraxis;
 
-import hudson.model.Computer;
 import hudson.model.Computer;
 import hudson.slaves.SlaveComputer;
 import java.io.IOException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import jenkinsci.plugin.browseraxis.label.ComputerFacts;
 
 /**
  * Represent version of browser
@@ -50,7 +50,7 @@ public final class BrowserVersion implements Comparable {
                 return (path + browser.getSuffixWindows());
             }
             try {
-                if (isUnix && browser.getUseSuffixs() && browser.getUnixForSuffix().contains((String) computer.getSystemProperties().get("os.name"))) {
+                if (isUnix && browser.getUseSuffixs() && browser.getUnixForSuffix().contains(ComputerFacts.of(computer).getOsName())) {
                     return (path + browser.getSuffixUnix());
                 }
             } catch (IOException ex) {
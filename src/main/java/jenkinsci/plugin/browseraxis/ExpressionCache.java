@@ -0,0 +1,123 @@
+package jenkinsci.plugin.browseraxis;
+
+import antlr.ANTLRException;
+import hudson.model.Label;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jenkinsci.plugin.browseraxis.label.CompiledExpression;
+
+/**
+ * Cache of parsed browser expressions and of versions of browser which were chosen for expression and node.
+ * Chosen version is used only while browser labels of the node and browsers are the same.
+ * 
+ * Size of both caches can be set by system property jenkinsci.plugin.browseraxis.ExpressionCache.size
+ * 
+ * @author Lucie Votypkova
+ */
+public class ExpressionCache {
+
+    private static final int SIZE = Integer.getInteger(ExpressionCache.class.getName() + ".size", 1000);
+    private static final ExpressionCache INSTANCE = new ExpressionCache();
+    // Expression and its parsed and compiled label, the least recently used expression is removed
+    private final Map<String, Parsed> expressions = new LinkedHashMap<String, Parsed>(16, 0.75f, true) {
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Parsed> eldest) {
+            return size() > SIZE;
+        }
+    };
+    // Expression with name of node and version chosen for them
+    private final ConcurrentMap<String, Resolution> resolutions = new ConcurrentHashMap<String, Resolution>();
+
+    public static ExpressionCache get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Return parsed label expression
+     * 
+     * @return label for given expression or null if the expression is not correct
+     */
+    public Label parse(String expression) {
+        Parsed parsed = getParsed(expression);
+        return parsed == null ? null : parsed.label;
+    }
+
+    /**
+     * Return label expression compiled to operations over bit sets
+     * 
+     * @return compiled expression or null if the expression is not correct or it can not be compiled
+     */
+    public CompiledExpression compile(String expression) {
+        Parsed parsed = getParsed(expression);
+        return parsed == null ? null : parsed.compiled;
+    }
+
+    private Parsed getParsed(String expression) {
+        synchronized (expressions) {
+            Parsed parsed = expressions.get(expression);
+            if (parsed != null) {
+                return parsed;
+            }
+        }
+        try {
+            Label label = Label.parseExpression(expression);
+            Parsed parsed = new Parsed(label, CompiledExpression.compile(label));
+            synchronized (expressions) {
+                expressions.put(expression, parsed);
+            }
+            return parsed;
+        } catch (ANTLRException ex) {
+            Logger.getLogger(ExpressionCache.class.getName()).log(Level.SEVERE, null, ex);
+            return null;
+        }
+    }
+
+    /**
+     * Return version which was chosen for given expression and node, if browser labels of node and browsers were not changed since that
+     * 
+     * @return version or null
+     */
+    public BrowserVersion getResolved(String expression, String nodeName, long generation, BrowserCatalog catalog) {
+        Resolution resolution = resolutions.get(expression + '\n' + nodeName);
+        if (resolution == null || resolution.generation != generation || resolution.catalog != catalog) {
+            return null;
+        }
+        return resolution.version;
+    }
+
+    public void putResolved(String expression, String nodeName, long generation, BrowserCatalog catalog, BrowserVersion version) {
+        if (resolutions.size() >= SIZE) {
+            resolutions.clear(); // entries for old labels of nodes are not needed
+        }
+        resolutions.put(expression + '\n' + nodeName, new Resolution(generation, catalog, version));
+    }
+
+    private static class Parsed {
+
+        private final Label label;
+        private final CompiledExpression compiled;
+
+        private Parsed(Label label, CompiledExpression compiled) {
+            this.label = label;
+            this.compiled = compiled;
+        }
+    }
+
+    private static class Resolution {
+
+        private final long generation;
+        private final BrowserCatalog catalog;
+        private final BrowserVersion version;
+
+        private Resolution(long generation, BrowserCatalog catalog, BrowserVersion version) {
+            this.generation = generation;
+            this.catalog = catalog;
+            this.version = version;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package jenkinsci.plugin.browseraxis.label;
+
+import hudson.Extension;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+
+/**
+ * Read version from application.ini file which is installed with browsers based on Mozilla (for example Firefox)
+ * 
+ * @author Lucie Votypkova
+ */
+@Extension
+public class ApplicationIniVersionDetector extends VersionDetector {
+
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    public String detect(File browser) throws IOException {
+        File directory = getInstallationDirectory(browser);
+        if (directory == null) {
+            return null;
+        }
+        File ini = new File(directory, "application.ini");
+        if (!ini.isFile()) {
+            return null;
+        }
+        BufferedReader reader = new BufferedReader(new FileReader(ini));
+        try {
+            boolean app = false;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.startsWith("[")) {
+                    app = line.equals("[App]");
+                } else if (app && line.startsWith("Version=")) {
+                    return line.substring("Version=".length()).trim();
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return null;
+    }
+}
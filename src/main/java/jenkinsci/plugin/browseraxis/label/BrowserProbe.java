@@ -0,0 +1,157 @@
+package jenkinsci.plugin.browseraxis.label;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import jenkinsci.plugin.browseraxis.Browser;
+import jenkinsci.plugin.browseraxis.BrowserVersion;
+
+/**
+ * Settings of one browser which are needed for searching of the browser on node. It is sent to the node
+ * as a part of {@link ProbeCallable}, so it contains only serializable values.
+ * 
+ * @author Lucie Votypkova
+ */
+public class BrowserProbe implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+    private final String name;
+    private final boolean useSuffixs;
+    private final String suffixUnix;
+    private final String suffixWindows;
+    private final Set<String> unixsForSuffix;
+    private final boolean autoCreatingVersionsWindows;
+    private final boolean autoCreatingVersionsUnix;
+    private final String defaultPathWindows;
+    private final String defaultPathUnix;
+    private final String findVersionCommandUnix;
+    private final String findVersionCommandWindows;
+    // Name of version and its path
+    private final Map<String, String> versions;
+    private final List<VersionDetector> detectors;
+    private final String versionPattern;
+    private final boolean minorVersion;
+    private transient Pattern compiledPattern;
+
+    public BrowserProbe(Browser browser) {
+        this.name = browser.getName();
+        this.useSuffixs = browser.getUseSuffixs();
+        this.suffixUnix = browser.getSuffixUnix();
+        this.suffixWindows = browser.getSuffixWindows();
+        this.unixsForSuffix = browser.getUnixForSuffix() == null ? new TreeSet<String>() : new TreeSet<String>(browser.getUnixForSuffix());
+        this.autoCreatingVersionsWindows = browser.getAutoCreatingVersionsWindows();
+        this.autoCreatingVersionsUnix = browser.getAutoCreatingVersionsUnix();
+        this.defaultPathWindows = browser.getDefaultPathWindows();
+        this.defaultPathUnix = browser.getDefaultPathUnix();
+        this.findVersionCommandUnix = browser.getFindVersionCommandUnix();
+        this.findVersionCommandWindows = browser.getFindVersionCommandWindows();
+        this.versions = new TreeMap<String, String>();
+        for (BrowserVersion version : browser.getNotAutoCreatedVersions()) {
+            versions.put(version.getVersionName(), version.getPath());
+        }
+        this.detectors = new ArrayList<VersionDetector>(browser.getVersionDetectors());
+        this.versionPattern = browser.getEffectiveVersionPattern();
+        this.minorVersion = Browser.GRANULARITY_MINOR.equals(browser.getVersionGranularity());
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Map<String, String> getVersions() {
+        return versions;
+    }
+
+    public List<VersionDetector> getDetectors() {
+        return detectors;
+    }
+
+    /**
+     * Return path including suffix according to browser settings and type of node
+     * 
+     * @return path including suffix
+     */
+    public String getPath(String path, boolean slave, boolean unix, String osName) {
+        if (path == null || !slave || !useSuffixs) {
+            return path;
+        }
+        if (!unix) {
+            return (path + suffixWindows);
+        }
+        if (unixsForSuffix.contains(osName)) {
+            return (path + suffixUnix);
+        }
+        return path;
+    }
+
+    public boolean isAutoversionPossible(boolean slave, boolean unix) {
+        if (!slave) {
+            return false; // it is autolabeling for slave not master
+        }
+        return (autoCreatingVersionsWindows && (!unix)) || (autoCreatingVersionsUnix && unix);
+    }
+
+    public String getDefaultPath(boolean unix) {
+        return unix ? defaultPathUnix : defaultPathWindows;
+    }
+
+    public String getFindVersionCommand(boolean unix) {
+        return unix ? findVersionCommandUnix : findVersionCommandWindows;
+    }
+
+    /**
+     * Find version in output of command or in version found by detector. Lines are checked from the last one
+     * to avoid mix it with warning messages.
+     * 
+     * @return major version or major and minor version according to browser settings, null if there is not any version
+     */
+    public String extractVersion(String output) {
+        if (output == null) {
+            return null;
+        }
+        if (compiledPattern == null) {
+            compiledPattern = Pattern.compile(versionPattern);
+        }
+        return extractVersion(compiledPattern, minorVersion, output);
+    }
+
+    static String extractVersion(Pattern pattern, boolean minorVersion, String output) {
+        String[] lines = output.split("\n");
+        for (int i = lines.length - 1; i >= 0; i--) {
+            Matcher matcher = pattern.matcher(lines[i]);
+            if (matcher.find()) {
+                String major = matcher.group(1);
+                if (major == null) {
+                    continue;
+                }
+                if (minorVersion && matcher.groupCount() >= 2 && matcher.group(2) != null) {
+                    return major + "." + matcher.group(2);
+                }
+                return major;
+            }
+        }
+        return null; // output does not contain version
+    }
+
+    /**
+     * Append all settings which have influence on result of searching
+     * 
+     */
+    public void appendFingerprint(StringBuilder builder) {
+        builder.append(name).append('|').append(useSuffixs).append('|').append(suffixUnix).append('|').append(suffixWindows)
+                .append('|').append(unixsForSuffix).append('|').append(autoCreatingVersionsWindows).append('|').append(autoCreatingVersionsUnix)
+                .append('|').append(defaultPathWindows).append('|').append(defaultPathUnix)
+                .append('|').append(findVersionCommandUnix).append('|').append(findVersionCommandWindows)
+                .append('|').append(versions).append('|').append(versionPattern).append('|').append(minorVersion);
+        for (VersionDetector detector : detectors) {
+            builder.append('|').append(detector.getClass().getName());
+        }
+        builder.append('\n');
+    }
+}
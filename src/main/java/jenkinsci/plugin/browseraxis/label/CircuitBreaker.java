@@ -0,0 +1,87 @@
+package jenkinsci.plugin.browseraxis.label;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Stop searching of browsers on nodes where it repeatedly fails. After given count of failures in a row, the node
+ * is not searched for some time, and this time is doubled with each next failure up to maximum. The first
+ * successful searching resets it.
+ *
+ * It can be set by system properties with prefix jenkinsci.plugin.browseraxis.label.CircuitBreaker:
+ * .failures in a row which stop searching, .backoff for the first pause and .maxBackoff in milliseconds.
+ *
+ * @author Lucie Votypkova
+ */
+public class CircuitBreaker {
+
+    private static final int FAILURES = Integer.getInteger(CircuitBreaker.class.getName() + ".failures", 3);
+    private static final long BACKOFF = Long.getLong(CircuitBreaker.class.getName() + ".backoff", 60000l);
+    private static final long MAX_BACKOFF = Long.getLong(CircuitBreaker.class.getName() + ".maxBackoff", 3600000l);
+    private static final CircuitBreaker INSTANCE = new CircuitBreaker();
+    // Name of node and its failures, only nodes which failed are here
+    private final ConcurrentMap<String, Failures> failures = new ConcurrentHashMap<String, Failures>();
+
+    public static CircuitBreaker get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Return true if node with given name can be searched now
+     *
+     */
+    public boolean allows(String nodeName) {
+        Failures nodeFailures = failures.get(nodeName);
+        return nodeFailures == null || nodeFailures.retryTime <= System.currentTimeMillis();
+    }
+
+    /**
+     * Return time when node can be searched again
+     *
+     * @return time in milliseconds or 0 if the node can be searched
+     */
+    public long getRetryTime(String nodeName) {
+        Failures nodeFailures = failures.get(nodeName);
+        return nodeFailures == null ? 0 : nodeFailures.retryTime;
+    }
+
+    public void succeeded(String nodeName) {
+        failures.remove(nodeName);
+    }
+
+    public void failed(String nodeName) {
+        Failures previous = failures.get(nodeName);
+        int count = previous == null ? 1 : previous.count + 1;
+        long retryTime = 0;
+        if (count >= FAILURES) {
+            long backoff = BACKOFF << Math.min(count - FAILURES, 30);
+            if (backoff <= 0 || backoff > MAX_BACKOFF) {
+                backoff = MAX_BACKOFF;
+            }
+            retryTime = System.currentTimeMillis() + backoff;
+            Logger.getLogger(CircuitBreaker.class.getName()).log(Level.WARNING, "Searching of browsers on node " + nodeName + " failed " + count + " times in a row, it is paused for " + backoff + " ms");
+        }
+        failures.put(nodeName, new Failures(count, retryTime));
+    }
+
+    /**
+     * Forget failures of node which was removed
+     *
+     */
+    public void remove(String nodeName) {
+        failures.remove(nodeName);
+    }
+
+    private static class Failures {
+
+        private final int count;
+        private final long retryTime;
+
+        private Failures(int count, long retryTime) {
+            this.count = count;
+            this.retryTime = retryTime;
+        }
+    }
+}
@@ -0,0 +1,298 @@
+package jenkinsci.plugin.browseraxis.label;
+
+import hudson.model.Label;
+import hudson.model.labels.LabelAtom;
+import hudson.model.labels.LabelExpression;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Label expression compiled to operations over bit sets. It is evaluated at once for all labels of the node
+ * (or all browser labels) and for all nodes, instead of evaluating the expression for each label or node separately.
+ *
+ * @author Lucie Votypkova
+ */
+public abstract class CompiledExpression {
+
+    private volatile Set<String> positiveLabels;
+
+    /**
+     * Compile given label expression
+     *
+     * @return compiled expression or null if the expression contains unknown kind of label
+     */
+    public static CompiledExpression compile(Label label) {
+        if (label instanceof LabelAtom) {
+            return new Atom(label.getName());
+        }
+        if (label instanceof LabelExpression.Paren) {
+            return compile(((LabelExpression.Paren) label).base);
+        }
+        if (label instanceof LabelExpression.Not) {
+            CompiledExpression base = compile(((LabelExpression.Not) label).base);
+            return base == null ? null : new Not(base);
+        }
+        if (label instanceof LabelExpression.BinaryOperator) {
+            LabelExpression.BinaryOperator operator = (LabelExpression.BinaryOperator) label;
+            CompiledExpression lhs = compile(operator.lhs);
+            CompiledExpression rhs = compile(operator.rhs);
+            if (lhs == null || rhs == null) {
+                return null;
+            }
+            if (label instanceof LabelExpression.And) {
+                return new And(lhs, rhs);
+            }
+            if (label instanceof LabelExpression.Or) {
+                return new Or(lhs, rhs);
+            }
+            if (label instanceof LabelExpression.Iff) {
+                return new Not(new Xor(lhs, rhs));
+            }
+            if (label instanceof LabelExpression.Implies) {
+                return new Or(new Not(lhs), rhs);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Find labels which match the expression if only that label is set. Labels are given by their numbers
+     * in {@link LabelDictionary}.
+     *
+     * @return numbers of matching labels
+     */
+    public BitSet matchingLabels(BitSet labels) {
+        return evaluate(new LabelOperands(), labels);
+    }
+
+    /**
+     * Find the first label of node in order of names which matches the expression if only that label is set
+     *
+     * @return matching label or null
+     */
+    public LabelAtom firstMatchingLabel(NodeLabels labels) {
+        int id = labels.firstOf(matchingLabels(labels.getBits()));
+        return id < 0 ? null : LabelDictionary.get().getAtom(id);
+    }
+
+    /**
+     * Find all nodes which have browser labels matching the expression
+     *
+     * @return names of nodes
+     */
+    public Set<String> matchingNodes() {
+        return NodeInventory.get().getIndex().matchingNodes(this);
+    }
+
+    /**
+     * Return names of all labels used in the expression
+     *
+     */
+    public Set<String> getLabels() {
+        Set<String> labels = new HashSet<String>();
+        addLabels(labels);
+        return labels;
+    }
+
+    /**
+     * Return names of labels which make the expression true when they are present, labels which are only negated
+     * (for example opera in firefox&&!opera) are not returned
+     *
+     */
+    public Set<String> getPositiveLabels() {
+        Set<String> labels = positiveLabels;
+        if (labels == null) {
+            labels = new HashSet<String>();
+            addLabels(labels, true);
+            labels = Collections.unmodifiableSet(labels);
+            positiveLabels = labels;
+        }
+        return labels;
+    }
+
+    /**
+     * Evaluate the expression, result contains only members of all
+     */
+    abstract BitSet evaluate(Operands operands, BitSet all);
+
+    abstract void addLabels(Set<String> labels);
+
+    /**
+     * Add labels which are in positive position if positive is true, otherwise labels in negative position
+     */
+    abstract void addLabels(Set<String> labels, boolean positive);
+
+    /**
+     * Values of labels used in the expression
+     */
+    interface Operands {
+
+        /**
+         * Return new bit set for given label
+         */
+        BitSet get(String label);
+    }
+
+    /**
+     * Each member is one label, so label is true only for itself
+     */
+    private static class LabelOperands implements Operands {
+
+        public BitSet get(String label) {
+            BitSet value = new BitSet();
+            int id = LabelDictionary.get().findId(label);
+            if (id >= 0) {
+                value.set(id);
+            }
+            return value;
+        }
+    }
+
+    private static class Atom extends CompiledExpression {
+
+        private final String name;
+
+        private Atom(String name) {
+            this.name = name;
+        }
+
+        @Override
+        BitSet evaluate(Operands operands, BitSet all) {
+            BitSet value = operands.get(name);
+            value.and(all);
+            return value;
+        }
+
+        @Override
+        void addLabels(Set<String> labels) {
+            labels.add(name);
+        }
+
+        @Override
+        void addLabels(Set<String> labels, boolean positive) {
+            if (positive) {
+                labels.add(name);
+            }
+        }
+    }
+
+    private static class Not extends CompiledExpression {
+
+        private final CompiledExpression base;
+
+        private Not(CompiledExpression base) {
+            this.base = base;
+        }
+
+        @Override
+        BitSet evaluate(Operands operands, BitSet all) {
+            BitSet value = (BitSet) all.clone();
+            value.andNot(base.evaluate(operands, all));
+            return value;
+        }
+
+        @Override
+        void addLabels(Set<String> labels) {
+            base.addLabels(labels);
+        }
+
+        @Override
+        void addLabels(Set<String> labels, boolean positive) {
+            base.addLabels(labels, !positive);
+        }
+    }
+
+    private static class And extends CompiledExpression {
+
+        private final CompiledExpression lhs;
+        private final CompiledExpression rhs;
+
+        private And(CompiledExpression lhs, CompiledExpression rhs) {
+            this.lhs = lhs;
+            this.rhs = rhs;
+        }
+
+        @Override
+        BitSet evaluate(Operands operands, BitSet all) {
+            BitSet value = lhs.evaluate(operands, all);
+            if (!value.isEmpty()) {
+                value.and(rhs.evaluate(operands, all));
+            }
+            return value;
+        }
+
+        @Override
+        void addLabels(Set<String> labels) {
+            lhs.addLabels(labels);
+            rhs.addLabels(labels);
+        }
+
+        @Override
+        void addLabels(Set<String> labels, boolean positive) {
+            lhs.addLabels(labels, positive);
+            rhs.addLabels(labels, positive);
+        }
+    }
+
+    private static class Or extends CompiledExpression {
+
+        private final CompiledExpression lhs;
+        private final CompiledExpression rhs;
+
+        private Or(CompiledExpression lhs, CompiledExpression rhs) {
+            this.lhs = lhs;
+            this.rhs = rhs;
+        }
+
+        @Override
+        BitSet evaluate(Operands operands, BitSet all) {
+            BitSet value = lhs.evaluate(operands, all);
+            value.or(rhs.evaluate(operands, all));
+            return value;
+        }
+
+        @Override
+        void addLabels(Set<String> labels) {
+            lhs.addLabels(labels);
+            rhs.addLabels(labels);
+        }
+
+        @Override
+        void addLabels(Set<String> labels, boolean positive) {
+            lhs.addLabels(labels, positive);
+            rhs.addLabels(labels, positive);
+        }
+    }
+
+    private static class Xor extends CompiledExpression {
+
+        private final CompiledExpression lhs;
+        private final CompiledExpression rhs;
+
+        private Xor(CompiledExpression lhs, CompiledExpression rhs) {
+            this.lhs = lhs;
+            this.rhs = rhs;
+        }
+
+        @Override
+        BitSet evaluate(Operands operands, BitSet all) {
+            BitSet value = lhs.evaluate(operands, all);
+            value.xor(rhs.evaluate(operands, all));
+            return value;
+        }
+
+        @Override
+        void addLabels(Set<String> labels) {
+            lhs.addLabels(labels);
+            rhs.addLabels(labels);
+        }
+
+        @Override
+        void addLabels(Set<String> labels, boolean positive) {
+            // each operand can make the result true when it is present as well as when it is missing
+            addLabels(labels);
+        }
+    }
+}
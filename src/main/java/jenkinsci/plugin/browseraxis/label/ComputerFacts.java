@@ -0,0 +1,106 @@
+package jenkinsci.plugin.browseraxis.label;
+
+import hudson.EnvVars;
+import hudson.model.Computer;
+import hudson.remoting.Callable;
+import hudson.remoting.VirtualChannel;
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Information about connected computer (system variables, name of operating system) which are obtained
+ * only once for each connection by one remote call. They are obtained when the computer is connected and
+ * they are forgotten when it is disconnected.
+ * 
+ * @author Lucie Votypkova
+ */
+public final class ComputerFacts {
+
+    private static final ConcurrentMap<Computer, ComputerFacts> FACTS = new ConcurrentHashMap<Computer, ComputerFacts>();
+    private final long connectTime;
+    private final Platform platform;
+
+    private ComputerFacts(long connectTime, Platform platform) {
+        this.connectTime = connectTime;
+        this.platform = platform;
+    }
+
+    /**
+     * Return information about given computer. They are obtained from the computer if it is the first call for the current connection.
+     * 
+     * @return information about computer
+     */
+    public static ComputerFacts of(Computer computer) throws IOException, InterruptedException {
+        ComputerFacts facts = FACTS.get(computer);
+        long connectTime = computer.getConnectTime();
+        if (facts == null || facts.connectTime != connectTime) {
+            VirtualChannel channel = computer.getChannel();
+            if (channel == null) {
+                throw new IOException("Computer " + computer.getDisplayName() + " is not connected");
+            }
+            Platform platform = ProbeTimeouts.call(channel, new PlatformCallable(), ProbeTimeouts.FACTS, "Obtaining of information about computer " + computer.getDisplayName());
+            facts = new ComputerFacts(connectTime, platform);
+            FACTS.put(computer, facts);
+        }
+        return facts;
+    }
+
+    /**
+     * Return information about given computer only if they were already obtained for the current connection
+     * 
+     * @return information about computer or null
+     */
+    public static ComputerFacts getIfPresent(Computer computer) {
+        ComputerFacts facts = FACTS.get(computer);
+        if (facts == null || facts.connectTime != computer.getConnectTime()) {
+            return null;
+        }
+        return facts;
+    }
+
+    /**
+     * Forget information about computer which was disconnected
+     * 
+     */
+    public static void forget(Computer computer) {
+        FACTS.remove(computer);
+    }
+
+    public EnvVars getEnvironment() {
+        return platform.environment;
+    }
+
+    public String getOsName() {
+        return platform.osName;
+    }
+
+    public boolean isUnix() {
+        return platform.unix;
+    }
+
+    private static class Platform implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+        private final String osName;
+        private final boolean unix;
+        private final EnvVars environment;
+
+        private Platform(String osName, boolean unix, EnvVars environment) {
+            this.osName = osName;
+            this.unix = unix;
+            this.environment = environment;
+        }
+    }
+
+    private static class PlatformCallable implements Callable<Platform, IOException> {
+
+        private static final long serialVersionUID = 1L;
+
+        public Platform call() throws IOException {
+            return new Platform(System.getProperty("os.name"), File.pathSeparatorChar == ':', new EnvVars(EnvVars.masterEnvVars));
+        }
+    }
+}
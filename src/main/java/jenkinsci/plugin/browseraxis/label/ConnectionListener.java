@@ -7,9 +7,11 @@ package jenkinsci.plugin.browseraxis.label;
 import hudson.Extension;
 import hudson.model.Computer;
 import hudson.model.Node;
-import hudson.model.TaskListener;
 import hudson.slaves.ComputerListener;
+import hudson.slaves.SlaveComputer;
 import java.io.IOException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  *
@@ -20,13 +22,35 @@ public class ConnectionListener extends ComputerListener {
 
     @Override
     public void onOnline(Computer computer) {
-        String threadName = "browsers for " + computer.getNode().getDisplayName();
-        for (Thread t : Thread.getAllStackTraces().keySet()) {
-            if (threadName.equals(t.getName()) && t instanceof FindBrowsersOnNode){
-                return;
+        Node node = computer.getNode();
+        try {
+            ComputerFacts facts = ComputerFacts.of(computer); // information about computer are obtained once for the whole connection
+            if (computer instanceof SlaveComputer && facts.isUnix()) {
+                UnixOsInventory.get().connected(computer, facts.getOsName());
             }
+        } catch (IOException ex) {
+            Logger.getLogger(ConnectionListener.class.getName()).log(Level.WARNING, "Information about computer " + computer.getDisplayName() + " can not be obtained", ex);
+        } catch (InterruptedException ex) {
+            Logger.getLogger(ConnectionListener.class.getName()).log(Level.WARNING, null, ex);
         }
-        FindBrowsersOnNode finder =  new FindBrowsersOnNode(threadName, System.currentTimeMillis(), computer.getNode());
-        finder.start();
+        if (node != null) {
+            NodeStateTracker.get().markStale(node.getDisplayName());
+            ProbeAdmission.get().request(node); // probes of many connected nodes are started gradually
+        }
+    }
+
+    @Override
+    public void onOffline(Computer computer) {
+        ComputerFacts.forget(computer); // information about computer are obtained again after connection
+        UnixOsInventory.get().disconnected(computer);
+        Node node = computer.getNode();
+        if (node != null) {
+            NodeStateTracker.get().markStale(node.getDisplayName()); // labels will be searched again after connection
+        }
+    }
+
+    @Override
+    public void onConfigurationChange() {
+        NodeStateTracker.get().nodesChanged();
     }
 }
@@ -1,26 +1,17 @@
 package jenkinsci.plugin.browseraxis.label;
 
-import groovyjarjarasm.asm.Label;
-import hudson.EnvVars;
 import hudson.FilePath;
 import hudson.model.Computer;
 import hudson.model.Hudson;
-import hudson.model.LabelFinder;
 import hudson.model.Node;
-import hudson.model.TaskListener;
-import hudson.model.labels.LabelAtom;
 import hudson.slaves.SlaveComputer;
-import hudson.tasks.Shell;
-import hudson.util.StreamTaskListener;
-import java.io.ByteArrayOutputStream;
-import java.io.File;
 import java.io.IOException;
-import java.io.PrintStream;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import jenkinsci.plugin.browseraxis.Browser;
@@ -31,158 +22,211 @@ import jenkinsci.plugin.browseraxis.BrowserVersion;
  * 
  * @author Lucie Votypkova
  */
-public class FindBrowsersOnNode extends Thread {
+public class FindBrowsersOnNode implements Runnable {
 
-    private long startTime;
+    private String name;
+    // time of creation, it is replaced by time when the probe starts running
+    private volatile long startTime;
+    private volatile boolean running;
     private Node node;
+    private boolean refresh;
+    private volatile Future<?> future;
     private Logger LOGGER = Logger.getLogger(Hudson.class.getName());
 
     public FindBrowsersOnNode(String name, long startTime, Node node) {
-        super(name);
+        this(name, startTime, node, false);
+    }
+
+    public FindBrowsersOnNode(String name, long startTime, Node node, boolean refresh) {
+        this.name = name;
         this.startTime = startTime;
         this.node = node;
+        this.refresh = refresh;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getNodeName() {
+        return node.getDisplayName();
+    }
+
+    void setFuture(Future<?> future) {
+        this.future = future;
+    }
+
+    /**
+     * Interrupt this probe if it is running
+     * 
+     */
+    public void cancel() {
+        Future<?> f = future;
+        if (f != null) {
+            f.cancel(true);
+        }
     }
 
     public long getStartTime() {
         return startTime;
     }
+
+    /**
+     * Return true if the probe already runs, probe waiting for free worker is not running
+     * 
+     */
+    public boolean isRunning() {
+        return running;
+    }
     
     public Node getNode(){
         return node;
     }
 
-    @Override
     public void run() {
-        Set<String> atoms = new TreeSet<String>();
+        startTime = System.currentTimeMillis();
+        running = true;
+        Thread thread = Thread.currentThread();
+        String workerName = thread.getName();
+        thread.setName(name);
+        try {
+            findBrowsers();
+        } finally {
+            thread.setName(workerName);
+            ProbeScheduler.get().finished(this);
+        }
+    }
+
+    private void findBrowsers() {
+        Computer computer = node.toComputer();
+        NodeStateTracker tracker = NodeStateTracker.get();
+        long generation = tracker.getGeneration(node.getDisplayName());
+        if (computer == null || computer.getChannel() == null || node.getRootPath() == null) {
+            tracker.setState(node.getDisplayName(), NodeState.STALE);
+            return; // node is not connected
+        }
+        tracker.setState(node.getDisplayName(), NodeState.PROBING);
         Browser.DescriptorImpl descriptor = ((Browser.DescriptorImpl) Hudson.getInstance().getDescriptorOrDie(Browser.class));
         Set<Browser> browsers = descriptor.getBrowsers();
+        List<BrowserProbe> plan = new ArrayList<BrowserProbe>();
         for (Browser browser : browsers) {
-            boolean contains = false;
-            LabelAtom atom = getAutoversion(browser, node); //look for default version of this browser
-
-            if (atom != null) {
-                contains = true;
-                atoms.add(atom.getDisplayName());
-            }
-            for (BrowserVersion version : browser.getNotAutoCreatedVersions()) {
-                try {
-                    if (node.createPath(parsePath(node.toComputer(), version.getPath(node.toComputer(), browser))).exists()) {
-                        contains = true;
-                        atoms.add((version.getVersionName()));
-                    }
-                } catch (IOException ex) {
-                    Logger.getLogger(BrowserFinder.class.getName()).log(Level.SEVERE, null, ex);
-                } catch (InterruptedException ex) {
-                    Logger.getLogger(BrowserFinder.class.getName()).log(Level.SEVERE, null, ex);
-                }
-            }
-            if (contains) {
-                atoms.add(browser.getName());
-            }
+            plan.add(new BrowserProbe(browser));
         }
-        descriptor.getSlaveLables().put(node.getDisplayName(), atoms); //actualize stored information about node`s browser labels
-        BrowserFinder finder = LabelFinder.all().get(BrowserFinder.class);
-        finder.actualizeNode(node.getDisplayName(), System.currentTimeMillis()); // store time of actualization
-        //actualization of labels if it is needed
-        for (LabelAtom label : descriptor.getLabelsOfNode(node)) {
-            if (!label.contains(node)) {
-                List<Node> nodes = Hudson.getInstance().getNodes();
-                try {
-                    Hudson.getInstance().setNodes(nodes); //change node, because the label is changed
-                } catch (IOException ex) {
-                    Logger.getLogger(FindBrowsersOnNode.class.getName()).log(Level.SEVERE, null, ex);
+        ProbeResultCache cache = ProbeResultCache.get();
+        CircuitBreaker breaker = CircuitBreaker.get();
+        ProbeResult result;
+        try {
+            String fingerprint = ProbeResultCache.fingerprint(plan, computer, node.getRootPath().getRemote());
+            // nothing relevant changed since the last searching, browsers could be upgraded only if it is refresh
+            result = refresh ? null : cache.get(node.getDisplayName(), fingerprint, computer.getConnectTime());
+            if (result == null) {
+                // the whole search is done on the node by one remote call, it is cancelled if it does not finish in time
+                ProbeCallable callable = new ProbeCallable(plan, computer instanceof SlaveComputer, node.getRootPath().getRemote(), VersionCommandRunner.TIMEOUT, ProbeTimeouts.PATHS, ProbeCallable.PARALLELISM);
+                result = ProbeTimeouts.call(computer.getChannel(), callable, ProbeTimeouts.PROBE, "Searching of browsers on node " + node.getDisplayName());
+                logCommandResults(result);
+                if (result.isComplete()) {
+                    cache.put(node.getDisplayName(), fingerprint, result, computer.getConnectTime());
+                    breaker.succeeded(node.getDisplayName());
+                } else {
+                    // labels are published, but the node stays out of date, so it is searched again
+                    Logger.getLogger(FindBrowsersOnNode.class.getName()).log(Level.WARNING, result.getTimedOutChecks() + " paths on node " + node.getDisplayName() + " were not checked in time");
+                    breaker.failed(node.getDisplayName());
                 }
+            } else {
+                breaker.succeeded(node.getDisplayName());
             }
+        } catch (IOException ex) {
+            Logger.getLogger(FindBrowsersOnNode.class.getName()).log(Level.SEVERE, "Searching of browsers on node " + node.getDisplayName() + " failed", ex);
+            tracker.finish(node.getDisplayName(), generation, NodeState.FAILED);
+            breaker.failed(node.getDisplayName());
+            return;
+        } catch (InterruptedException ex) {
+            Logger.getLogger(FindBrowsersOnNode.class.getName()).log(Level.SEVERE, null, ex);
+            tracker.setState(node.getDisplayName(), NodeState.STALE);
+            breaker.failed(node.getDisplayName()); // probe which hangs until it is cancelled is failure too
+            return;
         }
-        descriptor.save();
-        //BrowserFinder.getThreads().remove(this);
-        node.getAssignedLabels();
+        publish(node, result, descriptor, generation, result.isComplete() ? NodeState.FRESH : NodeState.STALE);
     }
 
     /**
-     * Replace system variable names by their values
+     * Publish stored result of the last searching on given node without queueing of probe, if nothing relevant
+     * was changed since that searching. Information about computer are not obtained remotely, so it is fast.
      * 
-     * @return path without system variables
+     * @return true if stored result was published
      */
-    public static String parsePath(Computer computer, String path) throws IOException, InterruptedException {
-        EnvVars env = computer.getEnvironment();
-        for (String s : env.keySet()) {
-            if (!(path.contains("$"))) {
-                return path;
-            }
-            String variable = "${" + s + "}";
-            if (path.contains(variable)) {
-                path = path.replace(variable, env.get(s));
-            }
+    public static boolean publishCached(Node node) {
+        String nodeName = node.getDisplayName();
+        long generation = NodeStateTracker.get().getGeneration(nodeName);
+        Computer computer = node.toComputer();
+        ComputerFacts facts = computer == null ? null : ComputerFacts.getIfPresent(computer);
+        FilePath rootPath = node.getRootPath();
+        if (facts == null || rootPath == null || !NodeInventory.get().isLoaded() || ProbeScheduler.get().isInFlight(nodeName)) {
+            return false;
         }
-        return path;
-    }
-
-    private String doCommand(Browser browser, Node node) throws IOException, InterruptedException {
-        ByteArrayOutputStream stream = new ByteArrayOutputStream();
-        TaskListener listener = new StreamTaskListener(stream);
-        Shell shell = new Shell(browser.getFindVersionCommand(node.toComputer()));
-        FilePath script = shell.createScriptFile(node.getRootPath());
-        node.createLauncher(listener).launch().cmds(shell.buildCommandLine(script)).stdout(listener).pwd(node.getRootPath()).join();
-        return stream.toString();
+        Browser.DescriptorImpl descriptor = ((Browser.DescriptorImpl) Hudson.getInstance().getDescriptorOrDie(Browser.class));
+        List<BrowserProbe> plan = new ArrayList<BrowserProbe>();
+        for (Browser browser : descriptor.getBrowsers()) {
+            plan.add(new BrowserProbe(browser));
+        }
+        String fingerprint = ProbeResultCache.fingerprint(plan, computer, facts, rootPath.getRemote());
+        ProbeResult result = ProbeResultCache.get().get(nodeName, fingerprint, computer.getConnectTime());
+        if (result == null) {
+            return false;
+        }
+        return publish(node, result, descriptor, generation, NodeState.FRESH);
     }
 
-    private String parseVersion(String version) {
-        String[] lines = version.split("\n");
-        int size = (lines.length) -1;
-        version = lines[size]; //the last line to avoid mix it with waring messages
-        if (version == null || "".equals(version)) {
-            return null; // command did not return any result
-        }
-        if (!version.contains(".")) {
-            return null; // returned result does not contains version
+    /**
+     * Publish labels found on node if the node was not reset since given generation and set given state of the node
+     * 
+     * @return true if the labels were published
+     */
+    private static boolean publish(Node node, ProbeResult result, Browser.DescriptorImpl descriptor, long generation, NodeState state) {
+        NodeStateTracker tracker = NodeStateTracker.get();
+        if (!tracker.isCurrent(node.getDisplayName(), generation)) {
+            // settings were changed during searching, the node stays out of date and it is searched again
+            Logger.getLogger(FindBrowsersOnNode.class.getName()).log(Level.FINE, "Result of searching of browsers on node " + node.getDisplayName() + " is out of date");
+            return false;
         }
-        int index = version.indexOf(".");
-        String shortVersion = version.substring(0, index);
-        if (!shortVersion.matches("[0-9]+")) {
-            //filter additional information
-            while (shortVersion.length() != 0 && (!shortVersion.matches("[0-9]+"))) {
-                shortVersion = shortVersion.substring(1);
+        Set<String> atoms = new TreeSet<String>(result.getLabels());
+        for (Map.Entry<String, String> autoVersion : result.getAutoVersions().entrySet()) {
+            Browser browser = descriptor.findBrowserByName(autoVersion.getKey());
+            if (browser == null) {
+                continue; // browser was removed during searching
             }
+            String path = result.isUnix() ? browser.getDefaultPathUnix() : browser.getDefaultPathWindows();
+            BrowserVersion version = new BrowserVersion(browser.getName() + "-" + autoVersion.getValue() + "-auto", path, true);
+            browser.addVersion(version);
+            atoms.add(version.getVersionName());
         }
-        if (shortVersion.length() == 0 || shortVersion.length() > 3) {
-            return null; //filtered result does not look like version
-        }
-        return shortVersion; //short version of default browser
-    }
-    
-    public boolean isAutoversionPossible(Browser browser, Node node){
-        if (!(node.toComputer() instanceof SlaveComputer)) {
-            return false; // it is autolabeling for slave not master
-        }
-        SlaveComputer slave = (SlaveComputer) node.toComputer();
-        boolean forwin = (browser.getAutoCreatingVersionsWindows() && (!slave.isUnix()));
-        boolean forUnix = (browser.getAutoCreatingVersionsUnix() && slave.isUnix());
-        if (!(forwin || forUnix)) {
-            return false;// browser does not use default browser
+        Set<String> oldAtoms;
+        try {
+            oldAtoms = descriptor.setLabelsOfNode(node.getDisplayName(), atoms); //actualize stored information about node`s browser labels
+        } catch (InterruptedException ex) {
+            Logger.getLogger(FindBrowsersOnNode.class.getName()).log(Level.WARNING, "Browser labels of node " + node.getDisplayName() + " were not published", ex);
+            tracker.setState(node.getDisplayName(), NodeState.STALE);
+            Thread.currentThread().interrupt();
+            return false;
         }
+        tracker.finish(node.getDisplayName(), generation, state);
+        LabelCommitter.get().labelsChanged(oldAtoms, atoms); //actualization of labels if it is needed
         return true;
     }
 
-    public LabelAtom getAutoversion(Browser browser, Node node) {
-        if(!isAutoversionPossible(browser, node)){
-            return null;
-        }
-        try {
-            FilePath path = node.createPath(parsePath(node.toComputer(), browser.getDefaultPath(node.toComputer())));
-            if (!path.exists()) {
-                return null; // there is no file in default browser path
-            }
-            String version = doCommand(browser, node); // find out the version of defult browser by command
-            String shortVersion = parseVersion(version);
-            if (shortVersion == null) {
-                return null; // the result of commnad does not look as version of browser
-            }
-            BrowserVersion autoVersion = new BrowserVersion(browser.getName() + "-" + shortVersion + "-auto", browser.getDefaultPathWithoutSuffix(node.toComputer()), true);
-            browser.addVersion(autoVersion);
-            return Hudson.getInstance().getLabelAtom(autoVersion.getVersionName());
-        } catch (Exception ex) {
-            return null; // there was some problem during obtaining version
+    private void logCommandResults(ProbeResult result) {
+        for (Map.Entry<String, VersionCommandRunner.Result> entry : result.getCommandResults().entrySet()) {
+            Level level = entry.getValue().isTimedOut() ? Level.WARNING : Level.FINE;
+            Logger.getLogger(FindBrowsersOnNode.class.getName()).log(level, "Command for version of browser " + entry.getKey() + " on node " + node.getDisplayName() + ": " + entry.getValue());
         }
     }
+
+    /**
+     * Replace system variable names by their values
+     * 
+     * @return path without system variables
+     */
+    public static String parsePath(Computer computer, String path) throws IOException, InterruptedException {
+        return PathTemplate.compile(path).expand(ComputerFacts.of(computer).getEnvironment());
+    }
 }
@@ -0,0 +1,234 @@
+package jenkinsci.plugin.browseraxis.label;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Append-only file with changes of browser labels of nodes. Each change is one small record at the end of the file.
+ * The file is rewritten only by compaction, when it contains too many records which are not needed any more.
+ * 
+ * Record consists of its length, type (labels of node or removing of node), name of node and its labels.
+ * 
+ * @author Lucie Votypkova
+ */
+public class InventoryJournal {
+
+    private static final byte PUT = 1;
+    private static final byte REMOVE = 2;
+    private static final int MIN_RECORDS_FOR_COMPACTION = 1000;
+    private final File file;
+    private FileChannel channel;
+    // number of records in the file
+    private int records = 0;
+
+    public InventoryJournal(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Read all records and apply them to given map of nodes and their labels. Incomplete or damaged record
+     * (for example after crash) is removed together with everything after it, so new records can be read again.
+     * 
+     */
+    public synchronized void replay(Map<String, Set<String>> nodes) throws IOException {
+        recover();
+        if (!file.exists()) {
+            return;
+        }
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            FileChannel in = raf.getChannel();
+            ByteBuffer buffer = ByteBuffer.allocate((int) in.size());
+            while (buffer.hasRemaining() && in.read(buffer) >= 0) {
+                // read whole file
+            }
+            buffer.flip();
+            int valid = 0;
+            while (buffer.remaining() >= 4) {
+                int length = buffer.getInt();
+                if (length <= 0 || buffer.remaining() < length) {
+                    break; // incomplete record
+                }
+                byte[] record = new byte[length];
+                buffer.get(record);
+                try {
+                    apply(record, nodes);
+                } catch (IOException ex) {
+                    break; // damaged record
+                }
+                records++;
+                valid = buffer.position();
+            }
+            if (valid < in.size()) {
+                Logger.getLogger(InventoryJournal.class.getName()).log(Level.WARNING, "Incomplete or damaged records at the end of " + file + " were removed");
+                in.truncate(valid);
+            }
+        } finally {
+            raf.close();
+        }
+    }
+
+    private void apply(byte[] record, Map<String, Set<String>> nodes) throws IOException {
+        DataInputStream input = new DataInputStream(new ByteArrayInputStream(record));
+        byte type = input.readByte();
+        if (type != PUT && type != REMOVE) {
+            throw new IOException("Unknown type of record " + type);
+        }
+        String nodeName = input.readUTF();
+        if (type == REMOVE) {
+            nodes.remove(nodeName);
+            return;
+        }
+        int count = input.readInt();
+        Set<String> labels = new TreeSet<String>();
+        for (int i = 0; i < count; i++) {
+            labels.add(input.readUTF());
+        }
+        nodes.put(nodeName, labels);
+    }
+
+    /**
+     * Append record with new labels of node
+     * 
+     */
+    public synchronized void appendPut(String nodeName, Set<String> labels) throws IOException {
+        write(getChannel(), createRecord(PUT, nodeName, labels));
+        records++;
+    }
+
+    /**
+     * Append record about removing of node
+     * 
+     */
+    public synchronized void appendRemove(String nodeName) throws IOException {
+        write(getChannel(), createRecord(REMOVE, nodeName, null));
+        records++;
+    }
+
+    /**
+     * Return true if there are much more records than nodes
+     * 
+     */
+    public synchronized boolean needsCompaction(int nodes) {
+        return records > Math.max(MIN_RECORDS_FOR_COMPACTION, 2 * nodes);
+    }
+
+    /**
+     * Replace the file by file which contains only one record for each given node. The new file is written
+     * completely before it replaces the old one, so one of them is always available (see {@link #recover()}).
+     * 
+     */
+    public synchronized void compact(Map<String, Set<String>> nodes) throws IOException {
+        File tmp = getTmpFile();
+        FileOutputStream output = new FileOutputStream(tmp);
+        try {
+            FileChannel out = output.getChannel();
+            for (Map.Entry<String, Set<String>> entry : nodes.entrySet()) {
+                write(out, createRecord(PUT, entry.getKey(), entry.getValue()));
+            }
+            out.force(true);
+        } finally {
+            output.close();
+        }
+        close();
+        if (!tmp.renameTo(file)) {
+            // file can not be replaced by renaming on some systems, the old file is kept until the new one is in place
+            File old = getOldFile();
+            if (file.exists() && !file.renameTo(old)) {
+                throw new IOException("File " + file + " can not be renamed to " + old);
+            }
+            if (!tmp.renameTo(file)) {
+                throw new IOException("File " + tmp + " can not be renamed to " + file);
+            }
+            old.delete();
+        }
+        records = nodes.size();
+    }
+
+    /**
+     * Finish or roll back compaction which was interrupted by crash. Complete new file is used if the old one
+     * was already moved away, otherwise the old file is used and the new one is deleted.
+     * 
+     */
+    private void recover() throws IOException {
+        File tmp = getTmpFile();
+        File old = getOldFile();
+        if (!file.exists()) {
+            if (old.exists() && tmp.exists()) {
+                // old file is moved only after the new one is written completely
+                if (!tmp.renameTo(file)) {
+                    throw new IOException("File " + tmp + " can not be renamed to " + file);
+                }
+            } else if (old.exists()) {
+                if (!old.renameTo(file)) {
+                    throw new IOException("File " + old + " can not be renamed to " + file);
+                }
+            }
+        }
+        if (file.exists()) {
+            tmp.delete();
+            old.delete();
+        }
+    }
+
+    private File getTmpFile() {
+        return new File(file.getPath() + ".tmp");
+    }
+
+    private File getOldFile() {
+        return new File(file.getPath() + ".old");
+    }
+
+    public synchronized void close() throws IOException {
+        if (channel != null) {
+            channel.force(true);
+            channel.close();
+            channel = null;
+        }
+    }
+
+    private FileChannel getChannel() throws IOException {
+        if (channel == null) {
+            channel = new FileOutputStream(file, true).getChannel();
+        }
+        return channel;
+    }
+
+    private static void write(FileChannel out, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+    }
+
+    private ByteBuffer createRecord(byte type, String nodeName, Set<String> labels) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(bytes);
+        output.writeByte(type);
+        output.writeUTF(nodeName);
+        if (type == PUT) {
+            output.writeInt(labels.size());
+            for (String label : labels) {
+                output.writeUTF(label);
+            }
+        }
+        output.flush();
+        ByteBuffer buffer = ByteBuffer.allocate(4 + bytes.size());
+        buffer.putInt(bytes.size());
+        buffer.put(bytes.toByteArray());
+        buffer.flip();
+        return buffer;
+    }
+}
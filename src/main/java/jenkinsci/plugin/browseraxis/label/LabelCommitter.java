@@ -0,0 +1,108 @@
+package jenkinsci.plugin.browseraxis.label;
+
+import hudson.model.Hudson;
+import hudson.model.Label;
+import hudson.model.labels.LabelAtom;
+import hudson.triggers.SafeTimerTask;
+import hudson.triggers.Trigger;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.Timer;
+
+/**
+ * Collect changes of browser labels of nodes and apply them together. Only labels which were added to or removed from
+ * some node are reset, instead of saving of all nodes by Hudson.setNodes.
+ * 
+ * Length of the window in milliseconds can be set by system property jenkinsci.plugin.browseraxis.label.LabelCommitter.window
+ * 
+ * @author Lucie Votypkova
+ */
+public class LabelCommitter {
+
+    private static final long WINDOW = Long.getLong(LabelCommitter.class.getName() + ".window", 2000l);
+    private static final LabelCommitter INSTANCE = new LabelCommitter();
+    // Names of labels which were changed from the last commit
+    private Set<String> changedLabels = new HashSet<String>();
+    private boolean scheduled = false;
+
+    public static LabelCommitter get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Register change of browser labels of node. Nothing is done if the labels are the same.
+     * 
+     * @return true if labels of node were changed
+     */
+    public boolean labelsChanged(Set<String> oldLabels, Set<String> newLabels) {
+        Set<String> changed = new HashSet<String>();
+        if (oldLabels != null) {
+            for (String label : oldLabels) {
+                if (!newLabels.contains(label)) {
+                    changed.add(label);
+                }
+            }
+        }
+        for (String label : newLabels) {
+            if (oldLabels == null || !oldLabels.contains(label)) {
+                changed.add(label);
+            }
+        }
+        if (changed.isEmpty()) {
+            return false;
+        }
+        boolean schedule;
+        synchronized (this) {
+            changedLabels.addAll(changed);
+            schedule = !scheduled;
+            scheduled = true;
+        }
+        if (schedule) {
+            Timer timer = Trigger.timer;
+            if (timer == null) {
+                commit(); // Hudson is not fully started yet
+            } else {
+                timer.schedule(new SafeTimerTask() {
+
+                    @Override
+                    protected void doRun() {
+                        commit();
+                    }
+                }, WINDOW);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reset all changed labels and labels expressions which contain them
+     * 
+     */
+    public void commit() {
+        Set<String> changed;
+        synchronized (this) {
+            changed = changedLabels;
+            changedLabels = new HashSet<String>();
+            scheduled = false;
+        }
+        if (changed.isEmpty()) {
+            return;
+        }
+        Hudson hudson = Hudson.getInstance();
+        for (String name : changed) {
+            hudson.getLabelAtom(name).reset();
+        }
+        for (Label label : hudson.getLabels()) {
+            if (label instanceof LabelAtom) {
+                continue;
+            }
+            for (String name : changed) {
+                if (label.getName().contains(name)) {
+                    label.reset(); // expression which can contain changed label
+                    break;
+                }
+            }
+        }
+        hudson.getQueue().scheduleMaintenance();
+    }
+}
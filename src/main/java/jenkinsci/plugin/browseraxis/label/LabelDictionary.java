@@ -0,0 +1,84 @@
+package jenkinsci.plugin.browseraxis.label;
+
+import hudson.model.Hudson;
+import hudson.model.labels.LabelAtom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Dictionary of all browser labels. Each name of browser or version gets its number, so labels of nodes
+ * can be stored as set of numbers instead of set of strings. Numbers are never reused.
+ *
+ * @author Lucie Votypkova
+ */
+public class LabelDictionary {
+
+    private static final LabelDictionary INSTANCE = new LabelDictionary();
+    // Name of label and its number
+    private final ConcurrentMap<String, Integer> ids = new ConcurrentHashMap<String, Integer>();
+    // Names and atoms indexed by number, arrays are replaced when new label is added
+    private volatile String[] names = new String[0];
+    private volatile LabelAtom[] atoms = new LabelAtom[0];
+
+    public static LabelDictionary get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Return number of given label, the label is added if it is not in dictionary yet
+     *
+     * @return number of label
+     */
+    public int getId(String name) {
+        Integer id = ids.get(name);
+        if (id != null) {
+            return id;
+        }
+        return add(name);
+    }
+
+    /**
+     * Return number of given label
+     *
+     * @return number of label or -1 if the label is not in dictionary
+     */
+    public int findId(String name) {
+        Integer id = ids.get(name);
+        return id == null ? -1 : id;
+    }
+
+    public String getName(int id) {
+        return names[id];
+    }
+
+    public LabelAtom getAtom(int id) {
+        return atoms[id];
+    }
+
+    /**
+     * Return count of all labels in dictionary
+     *
+     */
+    public int size() {
+        return names.length;
+    }
+
+    private synchronized int add(String name) {
+        Integer id = ids.get(name);
+        if (id != null) {
+            return id;
+        }
+        int size = names.length;
+        String[] newNames = new String[size + 1];
+        LabelAtom[] newAtoms = new LabelAtom[size + 1];
+        System.arraycopy(names, 0, newNames, 0, size);
+        System.arraycopy(atoms, 0, newAtoms, 0, size);
+        newNames[size] = name;
+        newAtoms[size] = Hudson.getInstance().getLabelAtom(name);
+        // arrays have to be published before the number is visible
+        atoms = newAtoms;
+        names = newNames;
+        ids.put(name, size);
+        return size;
+    }
+}
@@ -0,0 +1,57 @@
+package jenkinsci.plugin.browseraxis.label;
+
+import hudson.Extension;
+import java.io.File;
+import java.io.IOException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Find version from name of manifest or of directory with manifest, which is installed next to executable
+ * file of browser (for example Chrome on Windows has directory 23.0.1271.97 with file 23.0.1271.97.manifest).
+ * The highest version is returned if there are more of them.
+ * 
+ * @author Lucie Votypkova
+ */
+@Extension
+public class ManifestVersionDetector extends VersionDetector {
+
+    private static final long serialVersionUID = 1L;
+    private static final Pattern VERSION_NAME = Pattern.compile("(\\d+(?:\\.\\d+)+)(?:\\.manifest)?");
+
+    @Override
+    public String detect(File browser) throws IOException {
+        File directory = getInstallationDirectory(browser);
+        if (directory == null) {
+            return null;
+        }
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return null;
+        }
+        String version = null;
+        for (File file : files) {
+            Matcher matcher = VERSION_NAME.matcher(file.getName());
+            if (!matcher.matches()) {
+                continue;
+            }
+            boolean manifest = file.isFile() ? file.getName().endsWith(".manifest") : new File(file, file.getName() + ".manifest").isFile();
+            if (manifest && (version == null || compare(matcher.group(1), version) > 0)) {
+                version = matcher.group(1);
+            }
+        }
+        return version;
+    }
+
+    private static int compare(String version, String other) {
+        String[] numbers = version.split("\\.");
+        String[] otherNumbers = other.split("\\.");
+        for (int i = 0; i < Math.min(numbers.length, otherNumbers.length); i++) {
+            long difference = Long.parseLong(numbers[i]) - Long.parseLong(otherNumbers[i]);
+            if (difference != 0) {
+                return difference > 0 ? 1 : -1;
+            }
+        }
+        return numbers.length - otherNumbers.length;
+    }
+}
@@ -0,0 +1,96 @@
+package jenkinsci.plugin.browseraxis.label;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Nodes which have each browser label. Each node gets a number and for each label there is a bit set
+ * of numbers of nodes which have it. Numbers of removed nodes are reused.
+ *
+ * @author Lucie Votypkova
+ */
+class NodeIndex {
+
+    // Name of node and its number
+    private final Map<String, Integer> ids = new HashMap<String, Integer>();
+    // Names of nodes indexed by their numbers
+    private final List<String> names = new ArrayList<String>();
+    private final BitSet nodes = new BitSet();
+    // Nodes for each label indexed by number of label
+    private final List<BitSet> nodesOfLabel = new ArrayList<BitSet>();
+
+    /**
+     * Replace labels of given node
+     *
+     */
+    synchronized void put(String nodeName, NodeLabels oldLabels, NodeLabels newLabels) {
+        Integer id = ids.get(nodeName);
+        if (id == null) {
+            id = nodes.nextClearBit(0);
+            ids.put(nodeName, id);
+            if (id == names.size()) {
+                names.add(nodeName);
+            } else {
+                names.set(id, nodeName);
+            }
+            nodes.set(id);
+        }
+        if (oldLabels != null) {
+            clear(id, oldLabels);
+        }
+        BitSet labels = newLabels.getBits();
+        for (int label = labels.nextSetBit(0); label >= 0; label = labels.nextSetBit(label + 1)) {
+            while (nodesOfLabel.size() <= label) {
+                nodesOfLabel.add(new BitSet());
+            }
+            nodesOfLabel.get(label).set(id);
+        }
+    }
+
+    synchronized void remove(String nodeName, NodeLabels labels) {
+        Integer id = ids.remove(nodeName);
+        if (id == null) {
+            return;
+        }
+        if (labels != null) {
+            clear(id, labels);
+        }
+        names.set(id, null);
+        nodes.clear(id);
+    }
+
+    private void clear(int id, NodeLabels labels) {
+        BitSet bits = labels.getBits();
+        for (int label = bits.nextSetBit(0); label >= 0 && label < nodesOfLabel.size(); label = bits.nextSetBit(label + 1)) {
+            nodesOfLabel.get(label).clear(id);
+        }
+    }
+
+    /**
+     * Find all nodes which have browser labels matching given expression
+     *
+     * @return names of nodes
+     */
+    synchronized Set<String> matchingNodes(CompiledExpression expression) {
+        BitSet matching = expression.evaluate(new CompiledExpression.Operands() {
+
+            public BitSet get(String label) {
+                int id = LabelDictionary.get().findId(label);
+                if (id < 0 || id >= nodesOfLabel.size()) {
+                    return new BitSet();
+                }
+                return (BitSet) nodesOfLabel.get(id).clone();
+            }
+        }, nodes);
+        Set<String> result = new TreeSet<String>();
+        for (int id = matching.nextSetBit(0); id >= 0; id = matching.nextSetBit(id + 1)) {
+            result.add(names.get(id));
+        }
+        return result;
+    }
+}
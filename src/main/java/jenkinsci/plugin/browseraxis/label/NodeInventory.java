@@ -0,0 +1,284 @@
+package jenkinsci.plugin.browseraxis.label;
+
+import hudson.init.InitMilestone;
+import hudson.init.Initializer;
+import hudson.init.Terminator;
+import hudson.model.Hudson;
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Browser labels of all nodes. They are saved separately from settings of browsers in append-only journal,
+ * so change of labels of one node writes only one small record.
+ * 
+ * Labels are loaded in background after the first access. Until they are loaded, the labels which are
+ * already known are returned, labels of other nodes are returned as loading and changes of labels wait for
+ * the end of loading. Callers which can be blocked for a while wait for loading by {@link #awaitLoaded()} first.
+ * If loading fails, labels are kept only in memory, so the saved labels are not overwritten.
+ * 
+ * @author Lucie Votypkova
+ */
+public class NodeInventory {
+
+    private static final NodeInventory INSTANCE = new NodeInventory();
+    private static final NodeLabels LOADING = NodeLabels.loading();
+    // Time in milliseconds for which callers which can be blocked wait for the end of loading
+    private static final long LOADING_WAIT = 2000l;
+    // Name of node and its precomputed browser labels, they are replaced only if new labels are published
+    private final ConcurrentHashMap<String, NodeLabels> labels = new ConcurrentHashMap<String, NodeLabels>();
+    private final AtomicLong generation = new AtomicLong();
+    private final NodeIndex index = new NodeIndex();
+    private final AtomicBoolean loadingStarted = new AtomicBoolean();
+    private final CountDownLatch loaded = new CountDownLatch(1);
+    private InventoryJournal journal;
+
+    public static NodeInventory get() {
+        INSTANCE.startLoading();
+        return INSTANCE;
+    }
+
+    /**
+     * Start loading of labels of nodes when plugins are started, so they are usually loaded before they are needed
+     * 
+     */
+    @Initializer(after = InitMilestone.PLUGINS_STARTED)
+    public static void init() {
+        get();
+    }
+
+    /**
+     * Return true if labels of nodes are already loaded
+     * 
+     */
+    public boolean isLoaded() {
+        return loaded.getCount() == 0;
+    }
+
+    /**
+     * Wait for the end of loading at most for a short time, interruption stops waiting
+     * 
+     * @return true if labels are loaded
+     */
+    public boolean awaitLoaded() {
+        try {
+            return loaded.await(LOADING_WAIT, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return isLoaded();
+        }
+    }
+
+    /**
+     * Get browser labels for node with given name together with their generation. If labels of nodes are not loaded
+     * yet and the node does not have any labels yet, empty labels which are marked as loading are returned without waiting.
+     * 
+     * @return browser labels of node
+     */
+    public NodeLabels getNodeLabels(String nodeName) {
+        NodeLabels nodeLabels = labels.get(nodeName);
+        if (nodeLabels == null && !isLoaded()) {
+            return LOADING; // labels are read also by maintenance of queue, which must not be blocked
+        }
+        if (nodeLabels == null) {
+            nodeLabels = new NodeLabels(generation.incrementAndGet(), null);
+            NodeLabels previous = labels.putIfAbsent(nodeName, nodeLabels);
+            if (previous != null) {
+                nodeLabels = previous;
+            } else {
+                index.put(nodeName, null, nodeLabels);
+            }
+        }
+        return nodeLabels;
+    }
+
+    /**
+     * Publish new browser labels of node
+     * 
+     * @return previous browser labels of node
+     * @throws InterruptedException if it is interrupted while labels are loaded
+     */
+    public Set<String> setLabelsOfNode(String nodeName, Set<String> names) throws InterruptedException {
+        loaded.await();
+        synchronized (this) {
+            return publish(nodeName, names);
+        }
+    }
+
+    private Set<String> publish(String nodeName, Set<String> names) {
+        NodeLabels nodeLabels = new NodeLabels(generation.incrementAndGet(), names);
+        NodeLabels previous = labels.get(nodeName);
+        if (previous != null && previous.hasSameLabels(nodeLabels)) {
+            return previous.getNames(); // labels are not changed, so cached results for the generation stay valid
+        }
+        previous = labels.put(nodeName, nodeLabels); // empty labels could be added meanwhile by reading
+        index.put(nodeName, previous, nodeLabels);
+        if (journal != null) {
+            try {
+                journal.appendPut(nodeName, nodeLabels.getNames());
+            } catch (IOException ex) {
+                Logger.getLogger(NodeInventory.class.getName()).log(Level.SEVERE, "Browser labels of node " + nodeName + " can not be saved", ex);
+            }
+            compactIfNeeded();
+        }
+        return previous == null ? null : previous.getNames();
+    }
+
+    /**
+     * Delete browser labels of node which was removed
+     * 
+     */
+    public void remove(String nodeName) {
+        try {
+            loaded.await();
+        } catch (InterruptedException ex) {
+            Logger.getLogger(NodeInventory.class.getName()).log(Level.WARNING, "Browser labels of removed node " + nodeName + " were not deleted", ex);
+            Thread.currentThread().interrupt();
+            return;
+        }
+        synchronized (this) {
+            removeNode(nodeName);
+        }
+    }
+
+    private void removeNode(String nodeName) {
+        NodeLabels previous = labels.remove(nodeName);
+        if (previous != null) {
+            index.remove(nodeName, previous);
+            if (journal == null) {
+                return;
+            }
+            try {
+                journal.appendRemove(nodeName);
+            } catch (IOException ex) {
+                Logger.getLogger(NodeInventory.class.getName()).log(Level.SEVERE, "Removing of node " + nodeName + " can not be saved", ex);
+            }
+            compactIfNeeded();
+        }
+    }
+
+    public Set<String> getNodeNames() {
+        return labels.keySet();
+    }
+
+    /**
+     * Add labels of nodes which were saved by older version of plugin. Labels of nodes which are already known are not changed.
+     * 
+     * @return true if the labels were imported and saved
+     */
+    public boolean importLabels(Map<String, Set<String>> nodes) {
+        try {
+            loaded.await();
+        } catch (InterruptedException ex) {
+            Logger.getLogger(NodeInventory.class.getName()).log(Level.WARNING, "Browser labels of nodes were not imported", ex);
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        synchronized (this) {
+            for (Map.Entry<String, Set<String>> entry : nodes.entrySet()) {
+                putIfAbsent(entry.getKey(), entry.getValue());
+            }
+            return compact();
+        }
+    }
+
+    private void putIfAbsent(String nodeName, Set<String> names) {
+        NodeLabels nodeLabels = new NodeLabels(generation.incrementAndGet(), names);
+        if (labels.putIfAbsent(nodeName, nodeLabels) == null) {
+            index.put(nodeName, null, nodeLabels);
+        }
+    }
+
+    /**
+     * Return index of nodes by their browser labels
+     * 
+     */
+    NodeIndex getIndex() {
+        return index;
+    }
+
+    private void compactIfNeeded() {
+        if (journal.needsCompaction(labels.size())) {
+            compact();
+        }
+    }
+
+    private boolean compact() {
+        if (journal == null) {
+            return false; // labels were not loaded, saved labels must not be replaced
+        }
+        Map<String, Set<String>> nodes = new HashMap<String, Set<String>>();
+        for (Map.Entry<String, NodeLabels> entry : labels.entrySet()) {
+            nodes.put(entry.getKey(), entry.getValue().getNames());
+        }
+        try {
+            journal.compact(nodes);
+            return true;
+        } catch (IOException ex) {
+            Logger.getLogger(NodeInventory.class.getName()).log(Level.SEVERE, "Compaction of browser labels of nodes failed", ex);
+            return false;
+        }
+    }
+
+    private void startLoading() {
+        if (!loadingStarted.compareAndSet(false, true)) {
+            return;
+        }
+        Thread thread = new Thread(new Runnable() {
+
+            public void run() {
+                try {
+                    synchronized (NodeInventory.this) {
+                        load();
+                    }
+                } finally {
+                    loaded.countDown();
+                }
+                for (Map.Entry<String, NodeLabels> entry : labels.entrySet()) {
+                    // labels of nodes were not known before loading
+                    LabelCommitter.get().labelsChanged(null, entry.getValue().getNames());
+                }
+            }
+        }, "Loading of browser labels of nodes");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void load() {
+        try {
+            File root = Hudson.getInstance().getRootDir();
+            InventoryJournal inventoryJournal = new InventoryJournal(new File(root, NodeInventory.class.getName() + ".journal"));
+            Map<String, Set<String>> nodes = new HashMap<String, Set<String>>();
+            try {
+                inventoryJournal.replay(nodes);
+            } catch (IOException ex) {
+                Logger.getLogger(NodeInventory.class.getName()).log(Level.WARNING, "Browser labels of nodes can not be loaded", ex);
+            }
+            for (Map.Entry<String, Set<String>> entry : nodes.entrySet()) {
+                putIfAbsent(entry.getKey(), entry.getValue());
+            }
+            journal = inventoryJournal;
+        } catch (RuntimeException ex) {
+            // journal is not used, so it is not overwritten by labels which were not loaded
+            Logger.getLogger(NodeInventory.class.getName()).log(Level.SEVERE, "Browser labels of nodes can not be loaded, changes of labels will not be saved", ex);
+        }
+    }
+
+    @Terminator
+    public static void close() throws IOException {
+        synchronized (INSTANCE) {
+            if (INSTANCE.journal != null) {
+                INSTANCE.journal.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package jenkinsci.plugin.browseraxis.label;
+
+import hudson.model.labels.LabelAtom;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Immutable browser labels of one node. Each new set of labels of the node gets higher generation,
+ * so it is possible to recognize that the labels were changed.
+ *
+ * Labels are stored as numbers from {@link LabelDictionary}, names and atoms are only views of them ordered by names of labels.
+ *
+ * @author Lucie Votypkova
+ */
+public final class NodeLabels {
+
+    private final long generation;
+    private final BitSet bits = new BitSet();
+    private final int count;
+    // numbers of labels ordered by names of labels
+    private final int[] ordered;
+    private final boolean loading;
+    private final Set<String> names = new LabelSet<String>() {
+
+        @Override
+        String get(int id) {
+            return LabelDictionary.get().getName(id);
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return (o instanceof String) && NodeLabels.this.contains((String) o);
+        }
+    };
+    private final Set<LabelAtom> atoms = new LabelSet<LabelAtom>() {
+
+        @Override
+        LabelAtom get(int id) {
+            return LabelDictionary.get().getAtom(id);
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return (o instanceof LabelAtom) && NodeLabels.this.contains(((LabelAtom) o).getName());
+        }
+    };
+
+    public NodeLabels(long generation, Set<String> names) {
+        this(generation, names, false);
+    }
+
+    private NodeLabels(long generation, Set<String> names, boolean loading) {
+        this.generation = generation;
+        this.loading = loading;
+        if (names != null) {
+            LabelDictionary dictionary = LabelDictionary.get();
+            for (String name : names) {
+                bits.set(dictionary.getId(name));
+            }
+        }
+        this.count = bits.cardinality();
+        this.ordered = order(bits, count);
+    }
+
+    private static int[] order(BitSet bits, int count) {
+        Integer[] ids = new Integer[count];
+        int i = 0;
+        for (int id = bits.nextSetBit(0); id >= 0; id = bits.nextSetBit(id + 1)) {
+            ids[i++] = id;
+        }
+        final LabelDictionary dictionary = LabelDictionary.get();
+        Arrays.sort(ids, new Comparator<Integer>() {
+
+            public int compare(Integer id1, Integer id2) {
+                return dictionary.getName(id1).compareTo(dictionary.getName(id2));
+            }
+        });
+        int[] ordered = new int[count];
+        for (i = 0; i < count; i++) {
+            ordered[i] = ids[i];
+        }
+        return ordered;
+    }
+
+    /**
+     * Return labels of node whose labels are not loaded yet, they are empty
+     * 
+     */
+    static NodeLabels loading() {
+        return new NodeLabels(0, null, true);
+    }
+
+    public long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Return true if labels of nodes were not loaded yet, so it is not known whether the node has any browser
+     *
+     */
+    public boolean isLoading() {
+        return loading;
+    }
+
+    /**
+     * Return true if the node has label with given name
+     *
+     */
+    public boolean contains(String name) {
+        int id = LabelDictionary.get().findId(name);
+        return id >= 0 && bits.get(id);
+    }
+
+    /**
+     * Return true if the node has label with given number
+     *
+     */
+    public boolean contains(int id) {
+        return bits.get(id);
+    }
+
+    /**
+     * Return copy of numbers of labels of the node
+     *
+     */
+    public BitSet getBits() {
+        return (BitSet) bits.clone();
+    }
+
+    /**
+     * Return number of the first label of the node in order of names which is contained in given numbers
+     *
+     * @return number of label or -1 if there is not such label
+     */
+    int firstOf(BitSet ids) {
+        for (int id : ordered) {
+            if (ids.get(id)) {
+                return id;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Return true if both nodes have the same labels
+     *
+     */
+    public boolean hasSameLabels(NodeLabels labels) {
+        return bits.equals(labels.bits);
+    }
+
+    public Set<String> getNames() {
+        return names;
+    }
+
+    public Set<LabelAtom> getAtoms() {
+        return atoms;
+    }
+
+    /**
+     * Unmodifiable view of labels of the node ordered by their names
+     */
+    private abstract class LabelSet<T> extends AbstractSet<T> {
+
+        abstract T get(int id);
+
+        @Override
+        public int size() {
+            return count;
+        }
+
+        @Override
+        public Iterator<T> iterator() {
+            return new Iterator<T>() {
+
+                private int next = 0;
+
+                public boolean hasNext() {
+                    return next < ordered.length;
+                }
+
+                public T next() {
+                    if (next >= ordered.length) {
+                        throw new NoSuchElementException();
+                    }
+                    return get(ordered[next++]);
+                }
+
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package jenkinsci.plugin.browseraxis.label;
+
+/**
+ * State of browser labels of node
+ * 
+ * @author Lucie Votypkova
+ */
+public enum NodeState {
+
+    /**
+     * Browsers on the node have not been searched yet
+     */
+    UNKNOWN,
+    /**
+     * Browsers on the node are searched now
+     */
+    PROBING,
+    /**
+     * Browser labels of the node are actual
+     */
+    FRESH,
+    /**
+     * Browser labels of the node could be out of date and they should be searched again
+     */
+    STALE,
+    /**
+     * The last searching of browsers on the node failed
+     */
+    FAILED;
+
+    /**
+     * Return true if browsers on node in this state should be searched
+     * 
+     */
+    public boolean needsProbe() {
+        return this == UNKNOWN || this == STALE;
+    }
+}
@@ -0,0 +1,154 @@
+package jenkinsci.plugin.browseraxis.label;
+
+import hudson.model.Hudson;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import jenkinsci.plugin.browseraxis.Browser;
+
+/**
+ * Track state of browser labels of each node. The state is changed by probes and by events of nodes
+ * (connection, disconnection, change of configuration), so it is not necessary to check list of nodes
+ * whenever labels are computed.
+ * 
+ * Each reset of labels to out of date increases generation of the node. Probe remembers generation of the node
+ * at its start and its result is ignored if the node was reset during searching, because the result was found
+ * for old configuration.
+ * 
+ * @author Lucie Votypkova
+ */
+public class NodeStateTracker {
+
+    private static final NodeStateTracker INSTANCE = new NodeStateTracker();
+    // Name of node and its state
+    private final ConcurrentMap<String, NodeState> states = new ConcurrentHashMap<String, NodeState>();
+    // Name of node and time when its searching was finished last time
+    private final ConcurrentMap<String, Long> probeTimes = new ConcurrentHashMap<String, Long>();
+    // Source of generations, each reset gets new one
+    private final AtomicLong generations = new AtomicLong();
+    // Generation of the last reset of all nodes
+    private volatile long allReset = 0;
+    // Name of node and generation of its last own reset
+    private final ConcurrentMap<String, Long> nodeResets = new ConcurrentHashMap<String, Long>();
+
+    public static NodeStateTracker get() {
+        return INSTANCE;
+    }
+
+    public NodeState getState(String nodeName) {
+        NodeState state = states.get(nodeName);
+        if (state == null) {
+            return NodeState.UNKNOWN;
+        }
+        return state;
+    }
+
+    /**
+     * Return true if browsers on node should be searched. Node whose searching failed is searched again
+     * when its circuit breaker allows it.
+     * 
+     */
+    public boolean needsProbe(String nodeName) {
+        NodeState state = getState(nodeName);
+        return state.needsProbe() || (state == NodeState.FAILED && CircuitBreaker.get().allows(nodeName));
+    }
+
+    public void setState(String nodeName, NodeState state) {
+        states.put(nodeName, state);
+        if (state == NodeState.FRESH || state == NodeState.FAILED) {
+            probeTimes.put(nodeName, System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * Return generation of labels of node, it is changed by each reset of the node
+     * 
+     */
+    public long getGeneration(String nodeName) {
+        Long nodeGeneration = nodeResets.get(nodeName);
+        return nodeGeneration == null ? allReset : Math.max(allReset, nodeGeneration);
+    }
+
+    /**
+     * Return true if the node was not reset since given generation
+     * 
+     */
+    public boolean isCurrent(String nodeName, long generation) {
+        return getGeneration(nodeName) == generation;
+    }
+
+    /**
+     * Set state of node at the end of probe which started at given generation. Nothing is set if the node
+     * was reset during the probe, so it stays out of date.
+     * 
+     * @return true if the state was set
+     */
+    public synchronized boolean finish(String nodeName, long generation, NodeState state) {
+        if (!isCurrent(nodeName, generation)) {
+            return false;
+        }
+        setState(nodeName, state);
+        return true;
+    }
+
+    /**
+     * Mark labels of node as out of date
+     * 
+     */
+    public synchronized void markStale(String nodeName) {
+        nodeResets.put(nodeName, generations.incrementAndGet());
+        states.put(nodeName, NodeState.STALE);
+    }
+
+    /**
+     * Return time when searching of browsers on node was finished last time
+     * 
+     * @return time in milliseconds or 0 if the node was not searched yet
+     */
+    public long getLastProbeTime(String nodeName) {
+        Long time = probeTimes.get(nodeName);
+        return time == null ? 0 : time;
+    }
+
+    /**
+     * Mark labels of all known nodes as out of date
+     * 
+     */
+    public synchronized void markAllStale() {
+        allReset = generations.incrementAndGet();
+        for (String nodeName : states.keySet()) {
+            states.put(nodeName, NodeState.STALE);
+        }
+    }
+
+    /**
+     * Forget all information about node which was removed
+     * 
+     */
+    public void remove(String nodeName) {
+        states.remove(nodeName);
+        probeTimes.remove(nodeName);
+        nodeResets.remove(nodeName);
+        CircuitBreaker.get().remove(nodeName);
+        Browser.DescriptorImpl descriptor = ((Browser.DescriptorImpl) Hudson.getInstance().getDescriptorOrDie(Browser.class));
+        descriptor.removeNode(nodeName);
+        ProbeResultCache.get().remove(nodeName);
+    }
+
+    /**
+     * Remove information about nodes which do not exist any more. It is called only if configuration of nodes is changed.
+     * 
+     */
+    public void nodesChanged() {
+        Hudson hudson = Hudson.getInstance();
+        Set<String> names = new HashSet<String>(states.keySet());
+        names.addAll(NodeInventory.get().getNodeNames());
+        for (String nodeName : names) {
+            if (hudson.getNode(nodeName) == null && (!hudson.getDisplayName().equals(nodeName))) {
+                remove(nodeName); // delete unused nodes
+            }
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package jenkinsci.plugin.browseraxis.label;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Path of browser split to text and names of system variables (written as ${NAME}). The path is split only once
+ * and its variables are replaced by their values in one pass. Variables without value are left in the path.
+ * 
+ * @author Lucie Votypkova
+ */
+public final class PathTemplate {
+
+    private static final int SIZE = 1000;
+    private static final ConcurrentMap<String, PathTemplate> TEMPLATES = new ConcurrentHashMap<String, PathTemplate>();
+    // parts of path without variables, there is one more text than variables
+    private final String[] texts;
+    private final String[] variables;
+
+    private PathTemplate(String[] texts, String[] variables) {
+        this.texts = texts;
+        this.variables = variables;
+    }
+
+    /**
+     * Return split path, paths are split only once
+     * 
+     * @return split path
+     */
+    public static PathTemplate compile(String path) {
+        PathTemplate template = TEMPLATES.get(path);
+        if (template == null) {
+            template = parse(path);
+            if (TEMPLATES.size() >= SIZE) {
+                TEMPLATES.clear(); // paths are not used any more
+            }
+            TEMPLATES.put(path, template);
+        }
+        return template;
+    }
+
+    private static PathTemplate parse(String path) {
+        List<String> texts = new ArrayList<String>();
+        List<String> variables = new ArrayList<String>();
+        int start = 0;
+        int index = path.indexOf("${");
+        while (index >= 0) {
+            int end = path.indexOf('}', index + 2);
+            if (end < 0) {
+                break; // variable is not closed, the rest is text
+            }
+            texts.add(path.substring(start, index));
+            variables.add(path.substring(index + 2, end));
+            start = end + 1;
+            index = path.indexOf("${", start);
+        }
+        texts.add(path.substring(start));
+        return new PathTemplate(texts.toArray(new String[texts.size()]), variables.toArray(new String[variables.size()]));
+    }
+
+    public boolean hasVariables() {
+        return variables.length > 0;
+    }
+
+    /**
+     * Replace system variable names by their values
+     * 
+     * @return path without system variables
+     */
+    public String expand(Map<String, String> env) {
+        if (variables.length == 0) {
+            return texts[0];
+        }
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < variables.length; i++) {
+            builder.append(texts[i]);
+            String value = env.get(variables[i]);
+            if (value == null) {
+                builder.append("${").append(variables[i]).append('}');
+            } else {
+                builder.append(value);
+            }
+        }
+        builder.append(texts[variables.length]);
+        return builder.toString();
+    }
+}
@@ -0,0 +1,173 @@
+package jenkinsci.plugin.browseraxis.label;
+
+import hudson.model.Node;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Queue of requests for searching of browsers. Requests are passed to {@link ProbeScheduler} with limited rate,
+ * so many nodes which are connected at once do not overload Hudson. There is at most one request for each node.
+ * Count of running probes starts at one and grows gradually while there are waiting requests. Nodes which can
+ * start builds waiting for browser labels are searched before other nodes. Periodic searching of nodes again
+ * ({@link RescanWork}) goes through the same queue, so all probes share the same limits.
+ *
+ * It can be set by system properties with prefix jenkinsci.plugin.browseraxis.label.ProbeAdmission:
+ * .rate of probes per second, .burst of probes which can be started at once, .concurrent for maximal count
+ * of running probes and .ramp in milliseconds after which one more running probe is allowed.
+ *
+ * @author Lucie Votypkova
+ */
+public class ProbeAdmission {
+
+    private static final int CONCURRENT = Integer.getInteger(ProbeAdmission.class.getName() + ".concurrent", 4);
+    private static final long RAMP = Long.getLong(ProbeAdmission.class.getName() + ".ramp", 5000l);
+    private static final ProbeAdmission INSTANCE = new ProbeAdmission(new TokenBucket(
+            Double.parseDouble(System.getProperty(ProbeAdmission.class.getName() + ".rate", "2")),
+            Integer.getInteger(ProbeAdmission.class.getName() + ".burst", 2)));
+
+    private final TokenBucket bucket;
+    private final ProbeDemand demand = new ProbeDemand();
+    // Name of node and request for its searching, in order of requests, the order is changed only by demand of queue
+    private final Map<String, Request> waiting = new LinkedHashMap<String, Request>();
+    private Thread dispatcher;
+    private long rampStart;
+
+    ProbeAdmission(TokenBucket bucket) {
+        this.bucket = bucket;
+    }
+
+    public static ProbeAdmission get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Add request for searching of browsers on given node. Request for node which already waits keeps its place in queue.
+     *
+     * @return true if new request was added
+     */
+    public boolean request(Node node) {
+        return request(node, false);
+    }
+
+    /**
+     * Add request for searching of browsers on given node. Request for node which already waits keeps its place in queue.
+     *
+     * @param refresh if true, result of previous searching is not used even if nothing was changed
+     * @return true if new request was added
+     */
+    public synchronized boolean request(Node node, boolean refresh) {
+        String nodeName = node.getDisplayName();
+        Request waitingRequest = waiting.get(nodeName);
+        if (waitingRequest != null) {
+            waiting.put(nodeName, new Request(node, refresh || waitingRequest.refresh)); // use the current node object
+            return false;
+        }
+        if (ProbeScheduler.get().isInFlight(nodeName) || !CircuitBreaker.get().allows(nodeName)) {
+            return false;
+        }
+        waiting.put(nodeName, new Request(node, refresh));
+        if (dispatcher == null) {
+            startDispatcher();
+        }
+        notifyAll();
+        return true;
+    }
+
+    private void startDispatcher() {
+        rampStart = System.currentTimeMillis();
+        dispatcher = new Thread(new Runnable() {
+
+            public void run() {
+                dispatch();
+            }
+        }, "Browser axis probe admission");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+    }
+
+    /**
+     * Return count of probes which can run now, it grows with time since the queue is not empty
+     *
+     */
+    private int getAllowedCount(long now) {
+        long allowed = 1 + (RAMP > 0 ? (now - rampStart) / RAMP : CONCURRENT);
+        return (int) Math.min(Math.max(1, CONCURRENT), allowed);
+    }
+
+    /**
+     * Choose node which should be searched as the first. Nodes which can start builds waiting in queue are the first,
+     * then nodes with unknown labels, otherwise the order of requests is kept.
+     *
+     * @return name of chosen node
+     */
+    private String choose(List<String> names) {
+        String chosen = null;
+        int chosenPriority = -1;
+        for (String nodeName : names) {
+            int priority = demand.getPriority(nodeName);
+            if (priority > chosenPriority) {
+                chosen = nodeName;
+                chosenPriority = priority;
+                if (priority == ProbeDemand.NEEDED) {
+                    break;
+                }
+            }
+        }
+        return chosen;
+    }
+
+    private void dispatch() {
+        ProbeScheduler scheduler = ProbeScheduler.get();
+        try {
+            while (true) {
+                List<String> names;
+                synchronized (this) {
+                    if (waiting.isEmpty()) {
+                        dispatcher = null; // ramp starts again with next request
+                        return;
+                    }
+                    if (scheduler.getInFlightCount() >= getAllowedCount(System.currentTimeMillis())) {
+                        wait(500);
+                        continue;
+                    }
+                    if (!bucket.tryAcquire()) {
+                        wait(Math.max(1, bucket.getWaitTime()));
+                        continue;
+                    }
+                    names = new ArrayList<String>(waiting.keySet());
+                }
+                String chosen = choose(names); // queue is not read with lock of admission, queue can call request
+                Request request;
+                synchronized (this) {
+                    request = waiting.remove(chosen);
+                }
+                if (request != null) {
+                    scheduler.schedule(request.node, request.refresh);
+                }
+            }
+        } catch (InterruptedException ex) {
+            Logger.getLogger(ProbeAdmission.class.getName()).log(Level.WARNING, "Admission of probes was interrupted", ex);
+            synchronized (this) {
+                dispatcher = null;
+                if (!waiting.isEmpty()) {
+                    startDispatcher(); // waiting requests would not be dispatched until next request
+                }
+            }
+        }
+    }
+
+    private static class Request {
+
+        private final Node node;
+        private final boolean refresh;
+
+        private Request(Node node, boolean refresh) {
+            this.node = node;
+            this.refresh = refresh;
+        }
+    }
+}
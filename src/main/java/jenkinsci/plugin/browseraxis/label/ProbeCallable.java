@@ -0,0 +1,260 @@
+package jenkinsci.plugin.browseraxis.label;
+
+import hudson.EnvVars;
+import hudson.remoting.Callable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Search browsers on node. All paths are checked, system variables are replaced and version commands
+ * are run directly on the node, so the whole search costs one remote call.
+ * 
+ * Checks of paths of each browser have a deadline, because a path on unavailable network file system
+ * can block the check for long time. Time of version command is not counted in the deadline. Path which
+ * is not checked in time is considered as missing. Blocked check can not be interrupted, so count of checking
+ * threads is limited and a path whose check is still running (for example from previous searching) is not
+ * checked again, the running check is waited for instead.
+ * 
+ * Browsers are searched concurrently by limited count of threads and their results are merged in order
+ * of browsers, so labels of the node are changed at once. The limit can be set on Hudson by system property
+ * jenkinsci.plugin.browseraxis.label.ProbeCallable.parallelism
+ * 
+ * @author Lucie Votypkova
+ */
+public class ProbeCallable implements Callable<ProbeResult, IOException> {
+
+    private static final long serialVersionUID = 1L;
+    public static final int PARALLELISM = Integer.getInteger(ProbeCallable.class.getName() + ".parallelism", 4);
+    private static final int MAX_CHECKS = 16;
+    // Threads for checking of paths on the node, thread blocked by a check is not reused until the check finishes
+    private static final ExecutorService CHECKER = new ThreadPoolExecutor(0, MAX_CHECKS, 60, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(), new ThreadFactory() {
+
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "Browser axis path check");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+    // Path and its check which is running
+    private static final ConcurrentMap<String, Future<Boolean>> CHECKS = new ConcurrentHashMap<String, Future<Boolean>>();
+    private final List<BrowserProbe> browsers;
+    private final boolean slave;
+    private final String rootPath;
+    private final long commandTimeout;
+    private final long pathTimeout;
+    private final int parallelism;
+
+    public ProbeCallable(List<BrowserProbe> browsers, boolean slave, String rootPath, long commandTimeout, long pathTimeout, int parallelism) {
+        this.browsers = browsers;
+        this.slave = slave;
+        this.rootPath = rootPath;
+        this.commandTimeout = commandTimeout;
+        this.pathTimeout = pathTimeout;
+        this.parallelism = parallelism;
+    }
+
+    public ProbeResult call() throws IOException {
+        final boolean unix = File.pathSeparatorChar == ':';
+        final String osName = System.getProperty("os.name");
+        final EnvVars env = EnvVars.masterEnvVars;
+        ProbeResult result = new ProbeResult(osName, unix);
+        int threads = Math.min(parallelism, browsers.size());
+        if (threads <= 1) {
+            for (BrowserProbe browser : browsers) {
+                result.merge(probe(browser, env, unix, osName));
+            }
+            return result;
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "Browser axis browser search");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        try {
+            List<Future<ProbeResult>> futures = new ArrayList<Future<ProbeResult>>();
+            for (final BrowserProbe browser : browsers) {
+                futures.add(executor.submit(new java.util.concurrent.Callable<ProbeResult>() {
+
+                    public ProbeResult call() throws IOException {
+                        return probe(browser, env, unix, osName);
+                    }
+                }));
+            }
+            for (Future<ProbeResult> future : futures) {
+                result.merge(future.get()); // results are merged in order of browsers
+            }
+            return result;
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof IOException) {
+                throw (IOException) ex.getCause();
+            }
+            IOException exception = new IOException("Searching of browsers failed");
+            exception.initCause(ex.getCause());
+            throw exception;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Searching of browsers was cancelled");
+        } finally {
+            executor.shutdownNow(); // stop searching of other browsers if it failed or it was cancelled
+        }
+    }
+
+    /**
+     * Search one browser and its versions
+     * 
+     * @return result for the browser
+     */
+    private ProbeResult probe(BrowserProbe browser, EnvVars env, boolean unix, String osName) throws IOException {
+        ProbeResult result = new ProbeResult(osName, unix);
+        boolean contains = false;
+        String autoVersion = getAutoversion(browser, env, unix, osName, result); //look for default version of this browser
+        if (autoVersion != null) {
+            contains = true;
+            result.getAutoVersions().put(browser.getName(), autoVersion);
+        }
+        long deadline = System.currentTimeMillis() + pathTimeout; // version command can run longer than checks of paths
+        for (Map.Entry<String, String> version : browser.getVersions().entrySet()) {
+            String path = browser.getPath(version.getValue(), slave, unix, osName);
+            if (path != null && exists(new File(parsePath(env, path)), deadline, result)) {
+                contains = true;
+                result.getLabels().add(version.getKey());
+            }
+        }
+        if (contains) {
+            result.getLabels().add(browser.getName());
+        }
+        return result;
+    }
+
+    /**
+     * Replace system variable names by their values
+     * 
+     * @return path without system variables
+     */
+    public static String parsePath(Map<String, String> env, String path) {
+        return PathTemplate.compile(path).expand(env);
+    }
+
+    /**
+     * Check if file exists, it waits for the check at most until deadline. Check which is not finished in time
+     * keeps running, so next searching can use its result.
+     * 
+     * @return true if the file exists, false if it does not exist or it was not checked in time
+     */
+    private boolean exists(final File file, long deadline, ProbeResult result) throws IOException {
+        final String path = file.getPath();
+        Future<Boolean> check = CHECKS.get(path);
+        if (check == null) {
+            FutureTask<Boolean> task = new FutureTask<Boolean>(new java.util.concurrent.Callable<Boolean>() {
+
+                public Boolean call() {
+                    return file.exists();
+                }
+            }) {
+
+                @Override
+                protected void done() {
+                    CHECKS.remove(path, this);
+                }
+            };
+            check = CHECKS.putIfAbsent(path, task);
+            if (check == null) {
+                check = task;
+                try {
+                    CHECKER.execute(task);
+                } catch (RejectedExecutionException ex) {
+                    // all threads are blocked by checks which did not finish
+                    CHECKS.remove(path, task);
+                    result.addTimedOutCheck();
+                    return false;
+                }
+            }
+        }
+        try {
+            return check.get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException ex) {
+            result.addTimedOutCheck();
+            return false;
+        } catch (ExecutionException ex) {
+            return false;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Searching of browsers was cancelled");
+        }
+    }
+
+    private String getAutoversion(BrowserProbe browser, EnvVars env, boolean unix, String osName, ProbeResult result) {
+        if (!browser.isAutoversionPossible(slave, unix)) {
+            return null;
+        }
+        try {
+            String path = browser.getPath(browser.getDefaultPath(unix), slave, unix, osName);
+            if (path == null) {
+                return null;
+            }
+            File file = new File(parsePath(env, path));
+            if (!exists(file, System.currentTimeMillis() + pathTimeout, result)) {
+                return null; // there is no file in default browser path
+            }
+            String detected = detectVersion(browser, file);
+            if (detected != null) {
+                return detected; // version was found without launching of browser
+            }
+            String command = browser.getFindVersionCommand(unix);
+            if (command == null) {
+                return null;
+            }
+            // find out the version of defult browser by command
+            VersionCommandRunner.Result commandResult = new VersionCommandRunner(commandTimeout).run(command, unix, new File(rootPath));
+            result.getCommandResults().put(browser.getName(), commandResult);
+            if (commandResult.isTimedOut()) {
+                return null;
+            }
+            return browser.extractVersion(commandResult.getOutput());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt(); // searching was cancelled
+            return null;
+        } catch (Exception ex) {
+            Logger.getLogger(ProbeCallable.class.getName()).log(Level.FINE, "Version of browser " + browser.getName() + " was not found", ex);
+            return null; // there was some problem during obtaining version
+        }
+    }
+
+    private String detectVersion(BrowserProbe browser, File file) {
+        for (VersionDetector detector : browser.getDetectors()) {
+            try {
+                String version = browser.extractVersion(detector.detect(file));
+                if (version != null) {
+                    return version;
+                }
+            } catch (IOException ex) {
+                Logger.getLogger(ProbeCallable.class.getName()).log(Level.FINE, "Detector " + detector.getClass().getName() + " failed for " + file, ex);
+            } catch (RuntimeException ex) {
+                // unexpected content of installation files, next detector or version command is used
+                Logger.getLogger(ProbeCallable.class.getName()).log(Level.FINE, "Detector " + detector.getClass().getName() + " failed for " + file, ex);
+            }
+        }
+        return null;
+    }
+}
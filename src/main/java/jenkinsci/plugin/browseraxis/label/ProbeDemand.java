@@ -0,0 +1,83 @@
+package jenkinsci.plugin.browseraxis.label;
+
+import hudson.model.Hudson;
+import hudson.model.Label;
+import hudson.model.Queue;
+import java.util.BitSet;
+import jenkinsci.plugin.browseraxis.ExpressionCache;
+
+/**
+ * Browser labels which are needed by items in build queue. Nodes which had some of these labels are searched
+ * before other nodes, because they can start waiting builds. Labels which are only negated in label of item
+ * are not needed. Needed labels are found at most once per second.
+ *
+ * @author Lucie Votypkova
+ */
+class ProbeDemand {
+
+    /**
+     * Node had browser label which is needed by some item in queue
+     */
+    static final int NEEDED = 2;
+    /**
+     * Node was not searched yet, so it is not known which browser labels it has
+     */
+    static final int UNKNOWN = 1;
+    /**
+     * Node did not have any browser label which is needed
+     */
+    static final int NOT_NEEDED = 0;
+
+    private static final long REFRESH = 1000l;
+
+    private BitSet labels = new BitSet();
+    private long computed;
+
+    /**
+     * Return priority of searching of given node
+     *
+     */
+    int getPriority(String nodeName) {
+        NodeInventory inventory = NodeInventory.get();
+        if (inventory.isLoaded() && inventory.getNodeLabels(nodeName).getBits().intersects(getNeededLabels())) {
+            return NEEDED;
+        }
+        if (NodeStateTracker.get().getState(nodeName) == NodeState.UNKNOWN) {
+            return UNKNOWN;
+        }
+        return NOT_NEEDED; // node without browsers was already searched
+    }
+
+    /**
+     * Return numbers of browser labels which are needed by items in queue
+     *
+     */
+    synchronized BitSet getNeededLabels() {
+        long now = System.currentTimeMillis();
+        if (now - computed < REFRESH) {
+            return labels;
+        }
+        BitSet needed = new BitSet();
+        LabelDictionary dictionary = LabelDictionary.get();
+        ExpressionCache cache = ExpressionCache.get();
+        for (Queue.Item item : Hudson.getInstance().getQueue().getItems()) {
+            Label label = item.task.getAssignedLabel();
+            if (label == null) {
+                continue;
+            }
+            CompiledExpression expression = cache.compile(label.getExpression()); // the same labels are compiled only once
+            if (expression == null) {
+                continue;
+            }
+            for (String name : expression.getPositiveLabels()) {
+                int id = dictionary.findId(name); // only browser labels are in dictionary
+                if (id >= 0) {
+                    needed.set(id);
+                }
+            }
+        }
+        labels = needed;
+        computed = now;
+        return labels;
+    }
+}
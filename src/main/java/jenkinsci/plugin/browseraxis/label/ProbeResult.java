@@ -0,0 +1,79 @@
+package jenkinsci.plugin.browseraxis.label;
+
+import java.io.Serializable;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Result of searching of browsers on node which is returned by {@link ProbeCallable}
+ * 
+ * @author Lucie Votypkova
+ */
+public class ProbeResult implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+    private final String osName;
+    private final boolean unix;
+    // Names of found browsers and versions
+    private final Set<String> labels = new TreeSet<String>();
+    // Name of browser and short version of its default installation
+    private final Map<String, String> autoVersions = new TreeMap<String, String>();
+    // Name of browser and result of command for its version
+    private final Map<String, VersionCommandRunner.Result> commandResults = new TreeMap<String, VersionCommandRunner.Result>();
+    // Count of checks of paths which did not finish in time
+    private int timedOutChecks;
+
+    public ProbeResult(String osName, boolean unix) {
+        this.osName = osName;
+        this.unix = unix;
+    }
+
+    public String getOsName() {
+        return osName;
+    }
+
+    public boolean isUnix() {
+        return unix;
+    }
+
+    public Set<String> getLabels() {
+        return labels;
+    }
+
+    public Map<String, String> getAutoVersions() {
+        return autoVersions;
+    }
+
+    public Map<String, VersionCommandRunner.Result> getCommandResults() {
+        return commandResults;
+    }
+
+    public int getTimedOutChecks() {
+        return timedOutChecks;
+    }
+
+    public void addTimedOutCheck() {
+        timedOutChecks++;
+    }
+
+    /**
+     * Add result of searching of other browsers on the same node
+     * 
+     */
+    public void merge(ProbeResult result) {
+        labels.addAll(result.labels);
+        autoVersions.putAll(result.autoVersions);
+        commandResults.putAll(result.commandResults);
+        timedOutChecks += result.timedOutChecks;
+    }
+
+    /**
+     * Return true if all paths were checked in time, otherwise some browsers could be missing in result
+     * 
+     */
+    public boolean isComplete() {
+        return timedOutChecks == 0;
+    }
+}
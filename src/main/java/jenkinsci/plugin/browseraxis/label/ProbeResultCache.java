@@ -0,0 +1,159 @@
+package jenkinsci.plugin.browseraxis.label;
+
+import hudson.Util;
+import hudson.XmlFile;
+import hudson.model.Computer;
+import hudson.model.Hudson;
+import hudson.model.Saveable;
+import hudson.slaves.SlaveComputer;
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Results of searching of browsers stored for each node. Stored result is used instead of new searching
+ * if settings of browsers, operating system and root path of the node are the same and the result is not expired.
+ * Browsers can be upgraded while the node is disconnected, so result found during one connection is not used
+ * for the next connection. Results are saved in separated file, so they are available immediately after restart
+ * of Hudson, stored result is used once for the first connection of the node after restart.
+ * 
+ * Time of expiration in minutes can be set by system property jenkinsci.plugin.browseraxis.label.ProbeResultCache.ttl
+ * 
+ * @author Lucie Votypkova
+ */
+public class ProbeResultCache implements Saveable {
+
+    private static final long TTL = Long.getLong(ProbeResultCache.class.getName() + ".ttl", 24 * 60) * 60000l;
+    private static final ProbeResultCache INSTANCE = new ProbeResultCache();
+    // Name of node and the last result of searching on it
+    private Map<String, Entry> entries;
+    private final WriteBehind writer = new WriteBehind(this);
+
+    public static ProbeResultCache get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Return stored result for given node if it was created for the same fingerprint and connection
+     * and it is not expired
+     * 
+     * @return stored result or null
+     */
+    public synchronized ProbeResult get(String nodeName, String fingerprint, long connectTime) {
+        Entry entry = getEntries().get(nodeName);
+        if (entry == null || !entry.fingerprint.equals(fingerprint)) {
+            return null;
+        }
+        if (entry.getProbedAt() + TTL < System.currentTimeMillis()) {
+            return null; // result is too old
+        }
+        if (entry.getConnectTime() != connectTime) {
+            if (entry.current) {
+                return null; // node was reconnected since the searching
+            }
+            // result stored before restart, it belongs to this connection from now
+            getEntries().put(nodeName, new Entry(entry.fingerprint, entry.result, entry.getProbedAt(), connectTime));
+            writer.markDirty();
+        }
+        return entry.result;
+    }
+
+    public synchronized void put(String nodeName, String fingerprint, ProbeResult result, long connectTime) {
+        getEntries().put(nodeName, new Entry(fingerprint, result, System.currentTimeMillis(), connectTime));
+        writer.markDirty();
+    }
+
+    public synchronized void remove(String nodeName) {
+        if (getEntries().remove(nodeName) != null) {
+            writer.markDirty();
+        }
+    }
+
+    /**
+     * Create fingerprint of settings of browsers, operating system and root path of given computer
+     * 
+     * @return fingerprint
+     */
+    public static String fingerprint(List<BrowserProbe> plan, Computer computer, String rootPath) throws IOException, InterruptedException {
+        return fingerprint(plan, computer, ComputerFacts.of(computer), rootPath);
+    }
+
+    /**
+     * Create fingerprint from information about computer which were already obtained
+     * 
+     * @return fingerprint
+     */
+    public static String fingerprint(List<BrowserProbe> plan, Computer computer, ComputerFacts facts, String rootPath) {
+        StringBuilder builder = new StringBuilder();
+        if (computer instanceof SlaveComputer) {
+            builder.append(((SlaveComputer) computer).isUnix() ? "unix:" : "windows:");
+        }
+        builder.append(facts.getOsName()).append('\n');
+        builder.append(rootPath).append('\n');
+        for (BrowserProbe browser : plan) {
+            browser.appendFingerprint(builder);
+        }
+        return Util.getDigestOf(builder.toString());
+    }
+
+    private Map<String, Entry> getEntries() {
+        if (entries == null) {
+            entries = load();
+        }
+        return entries;
+    }
+
+    private XmlFile getConfigFile() {
+        return new XmlFile(Hudson.XSTREAM, new File(Hudson.getInstance().getRootDir(), ProbeResultCache.class.getName() + ".xml"));
+    }
+
+    private Map<String, Entry> load() {
+        XmlFile file = getConfigFile();
+        if (file.exists()) {
+            try {
+                return (Map<String, Entry>) file.read();
+            } catch (IOException ex) {
+                Logger.getLogger(ProbeResultCache.class.getName()).log(Level.WARNING, "Stored results of searching of browsers can not be loaded", ex);
+            }
+        }
+        return new HashMap<String, Entry>();
+    }
+
+    public synchronized void save() throws IOException {
+        getConfigFile().write(getEntries());
+    }
+
+    /**
+     * Stored result of searching on one node
+     * 
+     */
+    public static class Entry {
+
+        private final String fingerprint;
+        private final ProbeResult result;
+        private final long probedAt;
+        private final long connectTime;
+        // false for entry loaded from file, which was stored before restart
+        private transient boolean current;
+
+        public Entry(String fingerprint, ProbeResult result, long probedAt, long connectTime) {
+            this.fingerprint = fingerprint;
+            this.result = result;
+            this.probedAt = probedAt;
+            this.connectTime = connectTime;
+            this.current = true;
+        }
+
+        public long getProbedAt() {
+            return probedAt;
+        }
+
+        public long getConnectTime() {
+            return connectTime;
+        }
+    }
+}
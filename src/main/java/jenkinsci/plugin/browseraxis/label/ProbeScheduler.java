@@ -0,0 +1,110 @@
+package jenkinsci.plugin.browseraxis.label;
+
+import hudson.model.Node;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Run searching of browsers on nodes in bounded pool of workers. There is at most one probe
+ * in flight for each node, running probes are registered by name of node.
+ *
+ * The number of workers can be set by system property jenkinsci.plugin.browseraxis.label.ProbeScheduler.workers
+ *
+ * @author Lucie Votypkova
+ */
+public class ProbeScheduler {
+
+    /**
+     * Time since start of running after which probe is considered as hung and it is cancelled. Remote calls of probe
+     * have their own shorter deadlines, so this applies only to probe which is blocked on Hudson. Time in queue
+     * of workers is not counted.
+     */
+    public static final long PROBE_TIMEOUT = 300000l;
+
+    private static final int WORKERS = Integer.getInteger(ProbeScheduler.class.getName() + ".workers", 4);
+    private static final ProbeScheduler INSTANCE = new ProbeScheduler(WORKERS);
+
+    private final ThreadPoolExecutor executor;
+    // Name of node and probe which is processed for it
+    private final ConcurrentMap<String, FindBrowsersOnNode> inFlight = new ConcurrentHashMap<String, FindBrowsersOnNode>();
+
+    ProbeScheduler(int workers) {
+        if (workers < 1) {
+            workers = 1;
+        }
+        executor = new ThreadPoolExecutor(workers, workers, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ProbeThreadFactory());
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    public static ProbeScheduler get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Schedule searching of browsers on given node if there is not any probe for this node yet
+     *
+     * @param refresh if true, result of previous searching is not used even if nothing was changed
+     * @return true if new probe was scheduled
+     */
+    public boolean schedule(Node node, boolean refresh) {
+        String nodeName = node.getDisplayName();
+        if (!CircuitBreaker.get().allows(nodeName)) {
+            return false; // searching failed repeatedly, wait for the end of backoff
+        }
+        FindBrowsersOnNode probe = new FindBrowsersOnNode("browsers for " + nodeName, System.currentTimeMillis(), node, refresh);
+        FindBrowsersOnNode running = inFlight.putIfAbsent(nodeName, probe);
+        if (running != null) {
+            // Do not create another probe for node which is processed
+            if (running.isRunning() && (running.getStartTime() + PROBE_TIMEOUT) < System.currentTimeMillis()) {
+                Logger.getLogger(ProbeScheduler.class.getName()).log(Level.SEVERE, ("Probe created by Browser plugin to find browsers for node " + nodeName + " is time out"));
+                running.cancel(); // try to interupt probe which run too long
+                inFlight.remove(nodeName, running);
+            }
+            return false;
+        }
+        try {
+            probe.setFuture(executor.submit(probe));
+        } catch (RejectedExecutionException ex) {
+            inFlight.remove(nodeName, probe);
+            Logger.getLogger(ProbeScheduler.class.getName()).log(Level.SEVERE, null, ex);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Remove finished probe from registry of running probes
+     *
+     */
+    void finished(FindBrowsersOnNode probe) {
+        inFlight.remove(probe.getNodeName(), probe);
+    }
+
+    public boolean isInFlight(String nodeName) {
+        return inFlight.containsKey(nodeName);
+    }
+
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+
+    private static class ProbeThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger number = new AtomicInteger();
+
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "Browser axis probe worker " + number.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package jenkinsci.plugin.browseraxis.label;
+
+import hudson.remoting.Callable;
+import hudson.remoting.VirtualChannel;
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Time limits of phases of searching of browsers. Remote call which does not finish before its deadline is cancelled,
+ * so it does not run on the node any more.
+ *
+ * Limits in milliseconds can be set by system properties with prefix jenkinsci.plugin.browseraxis.label.ProbeTimeouts:
+ * .facts for obtaining information about computer, .paths for checking of paths of one browser on the node
+ * and .probe for the whole searching on the node. Limit of version command is set for {@link VersionCommandRunner}.
+ *
+ * @author Lucie Votypkova
+ */
+public final class ProbeTimeouts {
+
+    public static final long FACTS = Long.getLong(ProbeTimeouts.class.getName() + ".facts", 30000l);
+    public static final long PATHS = Long.getLong(ProbeTimeouts.class.getName() + ".paths", 10000l);
+    public static final long PROBE = Long.getLong(ProbeTimeouts.class.getName() + ".probe", 240000l);
+
+    private ProbeTimeouts() {
+    }
+
+    /**
+     * Call given callable on the node and wait for its result at most given time. The call is cancelled if it
+     * does not finish in time or if the waiting thread is interrupted.
+     *
+     * @return result of callable
+     * @throws IOException if the call failed or it did not finish in time
+     */
+    public static <V, T extends Throwable> V call(VirtualChannel channel, Callable<V, T> callable, long timeout, String description) throws IOException, InterruptedException {
+        Future<V> future = channel.callAsync(callable);
+        try {
+            return future.get(timeout, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException ex) {
+            throw new IOException(description + " did not finish in " + timeout + " ms");
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            IOException exception = new IOException(description + " failed");
+            exception.initCause(cause);
+            throw exception;
+        } finally {
+            if (!future.isDone()) {
+                future.cancel(true); // stop the call on the node
+            }
+        }
+    }
+}
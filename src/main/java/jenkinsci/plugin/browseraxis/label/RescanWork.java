@@ -0,0 +1,116 @@
+package jenkinsci.plugin.browseraxis.label;
+
+import hudson.Extension;
+import hudson.model.AsyncPeriodicWork;
+import hudson.model.Computer;
+import hudson.model.Hudson;
+import hudson.model.Node;
+import hudson.model.TaskListener;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Search browsers again on nodes which are connected for long time, so upgraded browsers are found. Each node
+ * is searched after interval since its last searching plus its own part of jitter, so nodes are not searched all at once.
+ * Nodes are passed to {@link ProbeAdmission}, so count of running probes and count of probes per second are limited
+ * together with other probes.
+ *
+ * It can be set by system properties with prefix jenkinsci.plugin.browseraxis.label.RescanWork:
+ * .interval in minutes (0 disables searching) and .jitter in percent of interval.
+ *
+ * @author Lucie Votypkova
+ */
+@Extension
+public class RescanWork extends AsyncPeriodicWork {
+
+    private static final long INTERVAL = Long.getLong(RescanWork.class.getName() + ".interval", 360l) * 60000;
+    private static final int JITTER = Integer.getInteger(RescanWork.class.getName() + ".jitter", 25);
+    private static final long CHECK_PERIOD = 60000l;
+
+    public RescanWork() {
+        super("Browser axis rescan");
+    }
+
+    @Override
+    public long getRecurrencePeriod() {
+        return INTERVAL > 0 ? Math.min(INTERVAL, CHECK_PERIOD) : CHECK_PERIOD;
+    }
+
+    @Override
+    protected void execute(TaskListener listener) throws IOException, InterruptedException {
+        if (INTERVAL <= 0) {
+            return;
+        }
+        ProbeAdmission admission = ProbeAdmission.get();
+        for (DueNode dueNode : findDueNodes(System.currentTimeMillis())) {
+            if (admission.request(dueNode.node, true)) {
+                listener.getLogger().println("Searching browsers on node " + dueNode.node.getDisplayName() + " again");
+            }
+        }
+    }
+
+    /**
+     * Find connected nodes which should be searched again, the most overdue nodes are the first
+     *
+     */
+    private List<DueNode> findDueNodes(long now) {
+        Hudson hudson = Hudson.getInstance();
+        List<Node> nodes = new ArrayList<Node>(hudson.getNodes());
+        nodes.add(hudson);
+        NodeStateTracker tracker = NodeStateTracker.get();
+        List<DueNode> due = new ArrayList<DueNode>();
+        for (Node node : nodes) {
+            String nodeName = node.getDisplayName();
+            NodeState state = tracker.getState(nodeName);
+            if (state != NodeState.FRESH && state != NodeState.FAILED) {
+                continue; // node is searched or it will be searched when its labels are needed
+            }
+            Computer computer = node.toComputer();
+            if (computer == null || !computer.isOnline() || computer.isConnecting()) {
+                continue;
+            }
+            long dueTime = tracker.getLastProbeTime(nodeName) + INTERVAL + getJitter(nodeName);
+            long retryTime = CircuitBreaker.get().getRetryTime(nodeName);
+            if (state == NodeState.FAILED) {
+                // node which failed is searched again after its backoff, or in the next run if it is not paused
+                dueTime = retryTime > 0 ? retryTime : tracker.getLastProbeTime(nodeName);
+            }
+            if (dueTime <= now) {
+                due.add(new DueNode(node, dueTime));
+            }
+        }
+        Collections.sort(due, new Comparator<DueNode>() {
+
+            public int compare(DueNode node1, DueNode node2) {
+                return node1.dueTime < node2.dueTime ? -1 : (node1.dueTime == node2.dueTime ? 0 : 1);
+            }
+        });
+        return due;
+    }
+
+    /**
+     * Return jitter of node, it is always the same for the same node
+     *
+     */
+    private long getJitter(String nodeName) {
+        long maxJitter = INTERVAL * JITTER / 100;
+        if (maxJitter <= 0) {
+            return 0;
+        }
+        return (nodeName.hashCode() & 0x7fffffffl) % maxJitter;
+    }
+
+    private static class DueNode {
+
+        private final Node node;
+        private final long dueTime;
+
+        private DueNode(Node node, long dueTime) {
+            this.node = node;
+            this.dueTime = dueTime;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package jenkinsci.plugin.browseraxis.label;
+
+/**
+ * Limit rate of some action. Tokens are added with given rate up to capacity of bucket and each action takes one token,
+ * so short bursts are allowed but the average rate is never higher than given rate.
+ *
+ * @author Lucie Votypkova
+ */
+public class TokenBucket {
+
+    private final double perSecond;
+    private final double capacity;
+    private double tokens;
+    private long refilled;
+
+    public TokenBucket(double perSecond, int capacity) {
+        this.perSecond = perSecond > 0 ? perSecond : 1;
+        this.capacity = capacity > 0 ? capacity : 1;
+        this.tokens = this.capacity;
+        this.refilled = System.currentTimeMillis();
+    }
+
+    /**
+     * Take one token if there is any
+     *
+     * @return true if token was taken
+     */
+    public synchronized boolean tryAcquire() {
+        refill();
+        if (tokens < 1) {
+            return false;
+        }
+        tokens--;
+        return true;
+    }
+
+    /**
+     * Return time in milliseconds after which next token will be available
+     *
+     */
+    public synchronized long getWaitTime() {
+        refill();
+        if (tokens >= 1) {
+            return 0;
+        }
+        return Math.max(1, (long) Math.ceil((1 - tokens) * 1000 / perSecond));
+    }
+
+    private void refill() {
+        long now = System.currentTimeMillis();
+        if (now > refilled) {
+            tokens = Math.min(capacity, tokens + (now - refilled) * perSecond / 1000);
+            refilled = now;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package jenkinsci.plugin.browseraxis.label;
+
+import hudson.model.Computer;
+import java.util.Collections;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Kinds of Unix systems of slaves with number of connected slaves for each of them. It is changed
+ * when a slave is connected or disconnected, so the list of systems is available without asking slaves.
+ * 
+ * @author Lucie Votypkova
+ */
+public class UnixOsInventory {
+
+    private static final UnixOsInventory INSTANCE = new UnixOsInventory();
+    // Connected computer and its system
+    private final ConcurrentMap<Computer, String> computers = new ConcurrentHashMap<Computer, String>();
+    // Name of system and number of connected slaves with it
+    private final Map<String, Integer> counts = new ConcurrentHashMap<String, Integer>();
+    private volatile SortedSet<String> connected = Collections.unmodifiableSortedSet(new TreeSet<String>());
+    private volatile SortedSet<String> everConnected = Collections.unmodifiableSortedSet(new TreeSet<String>());
+
+    public static UnixOsInventory get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Register connected Unix slave with given system
+     * 
+     */
+    public void connected(Computer computer, String osName) {
+        if (osName == null || computers.putIfAbsent(computer, osName) != null) {
+            return; // computer is already registered
+        }
+        synchronized (this) {
+            Integer count = counts.get(osName);
+            counts.put(osName, count == null ? 1 : count + 1);
+            if (count == null) {
+                connected = snapshot(counts.keySet());
+                if (!everConnected.contains(osName)) {
+                    SortedSet<String> set = new TreeSet<String>(everConnected);
+                    set.add(osName);
+                    everConnected = Collections.unmodifiableSortedSet(set);
+                }
+            }
+        }
+    }
+
+    /**
+     * Unregister disconnected slave
+     * 
+     */
+    public void disconnected(Computer computer) {
+        String osName = computers.remove(computer);
+        if (osName == null) {
+            return; // computer was not registered
+        }
+        synchronized (this) {
+            Integer count = counts.get(osName);
+            if (count == null || count <= 1) {
+                counts.remove(osName);
+                connected = snapshot(counts.keySet());
+            } else {
+                counts.put(osName, count - 1);
+            }
+        }
+    }
+
+    /**
+     * Return kinds of Unix systems of currently connected slaves
+     * 
+     */
+    public SortedSet<String> getConnectedUnixOs() {
+        return connected;
+    }
+
+    /**
+     * Return kinds of Unix systems which have ever been connected
+     * 
+     */
+    public SortedSet<String> getUnixOs() {
+        return everConnected;
+    }
+
+    private static SortedSet<String> snapshot(Iterable<String> names) {
+        SortedSet<String> set = new TreeSet<String>();
+        for (String name : names) {
+            set.add(name);
+        }
+        return Collections.unmodifiableSortedSet(set);
+    }
+}
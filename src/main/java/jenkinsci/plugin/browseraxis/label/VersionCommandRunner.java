@@ -0,0 +1,200 @@
+package jenkinsci.plugin.browseraxis.label;
+
+import hudson.util.ProcessTree;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Run command which prints version of browser. The command is run directly by shell of the node, it is stopped
+ * together with all processes started by it if it does not finish before deadline and only the end of its output is kept.
+ * 
+ * Deadline in milliseconds can be set by system property jenkinsci.plugin.browseraxis.label.VersionCommandRunner.timeout
+ * 
+ * @author Lucie Votypkova
+ */
+public class VersionCommandRunner {
+
+    public static final long TIMEOUT = Long.getLong(VersionCommandRunner.class.getName() + ".timeout", 60000l);
+    private static final int TAIL_SIZE = 4096;
+    // variable which marks processes started by the command, so they can be found and killed
+    private static final String COOKIE = "BROWSER_AXIS_VERSION_COMMAND";
+    private final long timeout;
+
+    public VersionCommandRunner(long timeout) {
+        this.timeout = timeout;
+    }
+
+    /**
+     * Run command in given directory
+     * 
+     * @return result of command
+     */
+    public Result run(String command, boolean unix, File directory) throws IOException, InterruptedException {
+        String[] cmds = unix ? new String[]{"sh", "-c", command} : new String[]{"cmd", "/c", command};
+        long start = System.currentTimeMillis();
+        long deadline = start + timeout;
+        Map<String, String> cookie = Collections.singletonMap(COOKIE, UUID.randomUUID().toString());
+        ProcessBuilder builder = new ProcessBuilder(cmds).directory(directory).redirectErrorStream(true);
+        builder.environment().putAll(cookie);
+        Process process = builder.start();
+        process.getOutputStream().close();
+        TailBuffer tail = new TailBuffer(TAIL_SIZE);
+        Thread pumper = new Thread(new Pumper(process.getInputStream(), tail), "Output of version command " + command);
+        pumper.setDaemon(true);
+        pumper.start();
+        Integer exitCode = null;
+        try {
+            while (exitCode == null) {
+                try {
+                    exitCode = process.exitValue();
+                } catch (IllegalThreadStateException ex) {
+                    long remaining = deadline - System.currentTimeMillis();
+                    if (remaining <= 0) {
+                        break; // command runs too long
+                    }
+                    Thread.sleep(Math.min(50l, remaining));
+                }
+            }
+        } finally {
+            if (exitCode == null) {
+                kill(process, cookie);
+            }
+        }
+        pumper.join(1000l);
+        // processes started in background by the command can still keep the output open
+        process.getInputStream().close();
+        long elapsed = System.currentTimeMillis() - start;
+        if (exitCode == null) {
+            return new Result(-1, true, elapsed, tail.toString());
+        }
+        return new Result(exitCode, false, elapsed, tail.toString());
+    }
+
+    /**
+     * Kill the shell and all processes started by it, killing of the shell only would leave the browser running
+     * 
+     */
+    private void kill(Process process, Map<String, String> cookie) throws InterruptedException {
+        try {
+            ProcessTree.get().killAll(process, cookie);
+        } finally {
+            process.destroy();
+        }
+    }
+
+    /**
+     * Exit status, duration and the end of output of command
+     * 
+     */
+    public static class Result implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+        private final int exitCode;
+        private final boolean timedOut;
+        private final long elapsed;
+        private final transient String output;
+
+        public Result(int exitCode, boolean timedOut, long elapsed, String output) {
+            this.exitCode = exitCode;
+            this.timedOut = timedOut;
+            this.elapsed = elapsed;
+            this.output = output;
+        }
+
+        public int getExitCode() {
+            return exitCode;
+        }
+
+        public boolean isTimedOut() {
+            return timedOut;
+        }
+
+        public long getElapsed() {
+            return elapsed;
+        }
+
+        /**
+         * Return the end of output, it is not available after result is sent to another computer
+         * 
+         */
+        public String getOutput() {
+            return output;
+        }
+
+        @Override
+        public String toString() {
+            return timedOut ? ("timed out after " + elapsed + " ms") : ("exit status " + exitCode + " after " + elapsed + " ms");
+        }
+    }
+
+    /**
+     * Keep only the last bytes which were written
+     * 
+     */
+    private static class TailBuffer {
+
+        private final byte[] buffer;
+        private int position = 0;
+        private boolean full = false;
+
+        private TailBuffer(int size) {
+            buffer = new byte[size];
+        }
+
+        private synchronized void write(byte[] bytes, int offset, int length) {
+            for (int i = offset; i < offset + length; i++) {
+                buffer[position] = bytes[i];
+                position++;
+                if (position == buffer.length) {
+                    position = 0;
+                    full = true;
+                }
+            }
+        }
+
+        @Override
+        public synchronized String toString() {
+            if (!full) {
+                return new String(buffer, 0, position);
+            }
+            byte[] bytes = new byte[buffer.length];
+            System.arraycopy(buffer, position, bytes, 0, buffer.length - position);
+            System.arraycopy(buffer, 0, bytes, buffer.length - position, position);
+            return new String(bytes);
+        }
+    }
+
+    private static class Pumper implements Runnable {
+
+        private final InputStream input;
+        private final TailBuffer tail;
+
+        private Pumper(InputStream input, TailBuffer tail) {
+            this.input = input;
+            this.tail = tail;
+        }
+
+        public void run() {
+            byte[] bytes = new byte[1024];
+            try {
+                int length;
+                while ((length = input.read(bytes)) >= 0) {
+                    tail.write(bytes, 0, length);
+                }
+            } catch (IOException ex) {
+                // process was destroyed
+            } finally {
+                try {
+                    input.close();
+                } catch (IOException ex) {
+                    // nothing to do
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package jenkinsci.plugin.browseraxis.label;
+
+import hudson.ExtensionList;
+import hudson.ExtensionPoint;
+import hudson.model.Hudson;
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+
+/**
+ * Find version of browser installed on node without launching of the browser, for example from files
+ * which are installed together with the browser. Detectors are sent to the node and they are run there.
+ * If no detector finds the version, command for version of browser is used.
+ * 
+ * @author Lucie Votypkova
+ */
+public abstract class VersionDetector implements ExtensionPoint, Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Find version of given browser executable. It is run on the node.
+     * 
+     * @return version of browser (for example 17.0.1) or null if this detector can not find it
+     */
+    public abstract String detect(File browser) throws IOException;
+
+    /**
+     * Return directory with installation of browser. Symbolic links are resolved, so the directory
+     * of real executable file is returned.
+     * 
+     * @return directory of browser
+     */
+    protected File getInstallationDirectory(File browser) throws IOException {
+        File file = browser.getCanonicalFile();
+        if (file.isDirectory()) {
+            return file;
+        }
+        return file.getParentFile();
+    }
+
+    public static ExtensionList<VersionDetector> all() {
+        return Hudson.getInstance().getExtensionList(VersionDetector.class);
+    }
+}
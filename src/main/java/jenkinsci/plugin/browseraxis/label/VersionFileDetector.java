@@ -0,0 +1,44 @@
+package jenkinsci.plugin.browseraxis.label;
+
+import hudson.Extension;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+
+/**
+ * Read version from file VERSION (or version, version.txt) which is installed next to executable file of browser
+ * 
+ * @author Lucie Votypkova
+ */
+@Extension
+public class VersionFileDetector extends VersionDetector {
+
+    private static final long serialVersionUID = 1L;
+    private static final String[] NAMES = {"VERSION", "version", "version.txt"};
+
+    @Override
+    public String detect(File browser) throws IOException {
+        File directory = getInstallationDirectory(browser);
+        if (directory == null) {
+            return null;
+        }
+        for (String name : NAMES) {
+            File file = new File(directory, name);
+            if (file.isFile()) {
+                BufferedReader reader = new BufferedReader(new FileReader(file));
+                try {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        if (line.trim().length() != 0) {
+                            return line.trim();
+                        }
+                    }
+                } finally {
+                    reader.close();
+                }
+            }
+        }
+        return null;
+    }
+}
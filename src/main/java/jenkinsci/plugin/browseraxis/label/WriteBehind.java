@@ -0,0 +1,78 @@
+package jenkinsci.plugin.browseraxis.label;
+
+import hudson.init.Terminator;
+import hudson.model.Saveable;
+import hudson.triggers.SafeTimerTask;
+import hudson.triggers.Trigger;
+import java.io.IOException;
+import java.util.List;
+import java.util.Timer;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Save object later. All changes which are made during the interval are saved together by one write.
+ * All changed objects are saved when Hudson is shut down.
+ * 
+ * Interval in milliseconds can be set by system property jenkinsci.plugin.browseraxis.label.WriteBehind.interval
+ * 
+ * @author Lucie Votypkova
+ */
+public class WriteBehind {
+
+    private static final long INTERVAL = Long.getLong(WriteBehind.class.getName() + ".interval", 5000l);
+    private static final List<WriteBehind> ALL = new CopyOnWriteArrayList<WriteBehind>();
+    private final Saveable target;
+    private final AtomicBoolean dirty = new AtomicBoolean();
+
+    public WriteBehind(Saveable target) {
+        this.target = target;
+        ALL.add(this);
+    }
+
+    /**
+     * Mark object as changed, it will be saved after interval
+     * 
+     */
+    public void markDirty() {
+        if (!dirty.compareAndSet(false, true)) {
+            return; // saving is already scheduled
+        }
+        Timer timer = Trigger.timer;
+        if (timer == null) {
+            flush(); // Hudson is not fully started yet
+            return;
+        }
+        timer.schedule(new SafeTimerTask() {
+
+            @Override
+            protected void doRun() {
+                flush();
+            }
+        }, INTERVAL);
+    }
+
+    /**
+     * Save object now if it was changed
+     * 
+     */
+    public void flush() {
+        if (!dirty.compareAndSet(true, false)) {
+            return;
+        }
+        try {
+            target.save();
+        } catch (IOException ex) {
+            Logger.getLogger(WriteBehind.class.getName()).log(Level.SEVERE, "Saving of " + target + " failed", ex);
+        }
+    }
+
+    @Terminator
+    public static void flushAll() {
+        for (WriteBehind writer : ALL) {
+            writer.flush();
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package jenkinsci.plugin.browseraxis.label;
+
+import java.util.regex.Pattern;
+import jenkinsci.plugin.browseraxis.Browser;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Lucie Votypkova
+ */
+public class BrowserProbeTest {
+
+    private static final Pattern DEFAULT = Pattern.compile(Browser.DEFAULT_VERSION_PATTERN);
+
+    @Test
+    public void testMajorVersion() {
+        assertEquals("17", BrowserProbe.extractVersion(DEFAULT, false, "Mozilla Firefox 17.0.1"));
+    }
+
+    @Test
+    public void testMinorVersion() {
+        assertEquals("17.0", BrowserProbe.extractVersion(DEFAULT, true, "Mozilla Firefox 17.0.1"));
+        assertEquals("23.0", BrowserProbe.extractVersion(DEFAULT, true, "Google Chrome 23.0.1271.97"));
+    }
+
+    @Test
+    public void testLastLineIsUsed() {
+        assertEquals("17", BrowserProbe.extractVersion(DEFAULT, false, "warning: libgtk 2.24 is old\nMozilla Firefox 17.0\n"));
+    }
+
+    @Test
+    public void testPatternWithMajorGroupOnly() {
+        assertEquals("9", BrowserProbe.extractVersion(Pattern.compile("Version (\\d+)"), true, "Internet Explorer Version 9"));
+    }
+
+    @Test
+    public void testOutputWithoutVersion() {
+        assertNull(BrowserProbe.extractVersion(DEFAULT, false, "firefox: command not found"));
+    }
+}
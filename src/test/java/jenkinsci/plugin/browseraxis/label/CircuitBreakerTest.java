@@ -0,0 +1,66 @@
+package jenkinsci.plugin.browseraxis.label;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Lucie Votypkova
+ */
+public class CircuitBreakerTest {
+
+    private static long backoff(CircuitBreaker breaker, String nodeName) {
+        return breaker.getRetryTime(nodeName) - System.currentTimeMillis();
+    }
+
+    @Test
+    public void testNodeIsPausedAfterFailuresInRow() {
+        CircuitBreaker breaker = new CircuitBreaker();
+        breaker.failed("slave1");
+        breaker.failed("slave1");
+        assertTrue(breaker.allows("slave1"));
+        assertEquals(0, breaker.getRetryTime("slave1"));
+        breaker.failed("slave1");
+        assertFalse(breaker.allows("slave1"));
+        long backoff = backoff(breaker, "slave1");
+        assertTrue("backoff " + backoff, backoff > 50000 && backoff <= 60000);
+        assertTrue(breaker.allows("slave2"));
+    }
+
+    @Test
+    public void testBackoffIsDoubled() {
+        CircuitBreaker breaker = new CircuitBreaker();
+        for (int i = 0; i < 4; i++) {
+            breaker.failed("slave1");
+        }
+        long backoff = backoff(breaker, "slave1");
+        assertTrue("backoff " + backoff, backoff > 110000 && backoff <= 120000);
+        breaker.failed("slave1");
+        backoff = backoff(breaker, "slave1");
+        assertTrue("backoff " + backoff, backoff > 230000 && backoff <= 240000);
+    }
+
+    @Test
+    public void testBackoffIsLimited() {
+        CircuitBreaker breaker = new CircuitBreaker();
+        for (int i = 0; i < 100; i++) {
+            breaker.failed("slave1");
+        }
+        long backoff = backoff(breaker, "slave1");
+        assertTrue("backoff " + backoff, backoff > 3500000 && backoff <= 3600000);
+    }
+
+    @Test
+    public void testSuccessResetsFailures() {
+        CircuitBreaker breaker = new CircuitBreaker();
+        for (int i = 0; i < 3; i++) {
+            breaker.failed("slave1");
+        }
+        breaker.succeeded("slave1");
+        assertTrue(breaker.allows("slave1"));
+        breaker.failed("slave1");
+        assertTrue(breaker.allows("slave1"));
+        breaker.remove("slave1");
+        assertEquals(0, breaker.getRetryTime("slave1"));
+    }
+}
@@ -0,0 +1,103 @@
+package jenkinsci.plugin.browseraxis.label;
+
+import hudson.model.Label;
+import hudson.model.labels.LabelAtom;
+import hudson.model.labels.LabelExpression;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Lucie Votypkova
+ */
+public class CompiledExpressionTest {
+
+    private static final LabelAtom FIREFOX = new LabelAtom("firefox");
+    private static final LabelAtom CHROME = new LabelAtom("chrome");
+    private static final LabelAtom OPERA = new LabelAtom("opera");
+
+    /**
+     * Three nodes: 0 has firefox, 1 has chrome, 2 has firefox and opera
+     */
+    private static class NodeOperands implements CompiledExpression.Operands {
+
+        private final Map<String, BitSet> nodes = new HashMap<String, BitSet>();
+
+        private NodeOperands() {
+            nodes.put("firefox", bits(0, 2));
+            nodes.put("chrome", bits(1));
+            nodes.put("opera", bits(2));
+        }
+
+        public BitSet get(String label) {
+            BitSet value = nodes.get(label);
+            return value == null ? new BitSet() : (BitSet) value.clone();
+        }
+    }
+
+    private static BitSet bits(int... indexes) {
+        BitSet bits = new BitSet();
+        for (int index : indexes) {
+            bits.set(index);
+        }
+        return bits;
+    }
+
+    private static BitSet evaluate(Label label) {
+        CompiledExpression compiled = CompiledExpression.compile(label);
+        assertNotNull(compiled);
+        return compiled.evaluate(new NodeOperands(), bits(0, 1, 2));
+    }
+
+    @Test
+    public void testAtom() {
+        assertEquals(bits(0, 2), evaluate(FIREFOX));
+        assertEquals(bits(), evaluate(new LabelAtom("safari")));
+    }
+
+    @Test
+    public void testAndOr() {
+        assertEquals(bits(2), evaluate(new LabelExpression.And(FIREFOX, OPERA)));
+        assertEquals(bits(0, 1, 2), evaluate(new LabelExpression.Or(FIREFOX, CHROME)));
+        assertEquals(bits(), evaluate(new LabelExpression.And(CHROME, new LabelExpression.Paren(new LabelExpression.Or(FIREFOX, OPERA)))));
+    }
+
+    @Test
+    public void testNot() {
+        assertEquals(bits(1), evaluate(new LabelExpression.Not(FIREFOX)));
+        assertEquals(bits(0), evaluate(new LabelExpression.And(FIREFOX, new LabelExpression.Not(OPERA))));
+    }
+
+    @Test
+    public void testImpliesIff() {
+        assertEquals(bits(1, 2), evaluate(new LabelExpression.Implies(FIREFOX, OPERA)));
+        assertEquals(bits(1, 2), evaluate(new LabelExpression.Iff(FIREFOX, OPERA)));
+        assertEquals(bits(), evaluate(new LabelExpression.Iff(CHROME, FIREFOX)));
+    }
+
+    @Test
+    public void testLabels() {
+        CompiledExpression compiled = CompiledExpression.compile(new LabelExpression.And(FIREFOX, new LabelExpression.Not(OPERA)));
+        assertEquals(2, compiled.getLabels().size());
+        assertTrue(compiled.getLabels().contains("firefox"));
+        assertTrue(compiled.getLabels().contains("opera"));
+    }
+
+    @Test
+    public void testPositiveLabels() {
+        Set<String> labels = CompiledExpression.compile(new LabelExpression.And(FIREFOX, new LabelExpression.Not(OPERA))).getPositiveLabels();
+        assertEquals(1, labels.size());
+        assertTrue(labels.contains("firefox"));
+        labels = CompiledExpression.compile(new LabelExpression.Not(new LabelExpression.Or(CHROME, new LabelExpression.Not(OPERA)))).getPositiveLabels();
+        assertEquals(1, labels.size());
+        assertTrue(labels.contains("opera"));
+        labels = CompiledExpression.compile(new LabelExpression.Implies(FIREFOX, CHROME)).getPositiveLabels();
+        assertEquals(1, labels.size());
+        assertTrue(labels.contains("chrome"));
+        assertEquals(2, CompiledExpression.compile(new LabelExpression.Iff(FIREFOX, CHROME)).getPositiveLabels().size());
+    }
+}
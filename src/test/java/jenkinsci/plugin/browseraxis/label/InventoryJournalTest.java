@@ -0,0 +1,166 @@
+package jenkinsci.plugin.browseraxis.label;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Lucie Votypkova
+ */
+public class InventoryJournalTest {
+
+    private File dir;
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = File.createTempFile("journal", "");
+        dir.delete();
+        dir.mkdir();
+        file = new File(dir, "labels.journal");
+    }
+
+    @After
+    public void tearDown() {
+        for (File child : dir.listFiles()) {
+            child.delete();
+        }
+        dir.delete();
+    }
+
+    private static Set<String> labels(String... names) {
+        Set<String> labels = new TreeSet<String>();
+        for (String name : names) {
+            labels.add(name);
+        }
+        return labels;
+    }
+
+    private Map<String, Set<String>> replay() throws IOException {
+        Map<String, Set<String>> nodes = new HashMap<String, Set<String>>();
+        new InventoryJournal(file).replay(nodes);
+        return nodes;
+    }
+
+    private void appendBytes(int length, byte[] bytes) throws IOException {
+        DataOutputStream output = new DataOutputStream(new FileOutputStream(file, true));
+        try {
+            output.writeInt(length);
+            output.write(bytes);
+        } finally {
+            output.close();
+        }
+    }
+
+    @Test
+    public void testReplay() throws IOException {
+        InventoryJournal journal = new InventoryJournal(file);
+        journal.appendPut("slave1", labels("firefox", "firefox-17"));
+        journal.appendPut("slave2", labels("opera"));
+        journal.appendPut("slave1", labels("firefox", "firefox-18"));
+        journal.appendRemove("slave2");
+        journal.close();
+        Map<String, Set<String>> nodes = replay();
+        assertEquals(1, nodes.size());
+        assertEquals(labels("firefox", "firefox-18"), nodes.get("slave1"));
+    }
+
+    @Test
+    public void testIncompleteRecordIsRemoved() throws IOException {
+        InventoryJournal journal = new InventoryJournal(file);
+        journal.appendPut("slave1", labels("firefox"));
+        journal.close();
+        long size = file.length();
+        appendBytes(100, new byte[]{1, 0});
+        assertEquals(labels("firefox"), replay().get("slave1"));
+        assertEquals(size, file.length());
+        journal = new InventoryJournal(file);
+        journal.appendPut("slave2", labels("chrome"));
+        journal.close();
+        assertEquals(labels("chrome"), replay().get("slave2"));
+    }
+
+    @Test
+    public void testDamagedRecordIsRemoved() throws IOException {
+        InventoryJournal journal = new InventoryJournal(file);
+        journal.appendPut("slave1", labels("firefox"));
+        journal.close();
+        long size = file.length();
+        appendBytes(3, new byte[]{9, 0, 0});
+        journal = new InventoryJournal(file);
+        journal.appendPut("slave2", labels("chrome"));
+        journal.close();
+        Map<String, Set<String>> nodes = replay();
+        assertEquals(1, nodes.size());
+        assertEquals(size, file.length());
+        journal = new InventoryJournal(file);
+        journal.appendPut("slave3", labels("opera"));
+        journal.close();
+        assertEquals(labels("opera"), replay().get("slave3"));
+    }
+
+    @Test
+    public void testCompaction() throws IOException {
+        InventoryJournal journal = new InventoryJournal(file);
+        for (int i = 0; i < 1001; i++) {
+            journal.appendPut("slave1", labels("firefox-" + i));
+        }
+        assertTrue(journal.needsCompaction(1));
+        Map<String, Set<String>> nodes = new TreeMap<String, Set<String>>();
+        nodes.put("slave1", labels("firefox-1000"));
+        journal.compact(nodes);
+        assertFalse(journal.needsCompaction(1));
+        journal.appendPut("slave2", labels("chrome"));
+        journal.close();
+        nodes = replay();
+        assertEquals(labels("firefox-1000"), nodes.get("slave1"));
+        assertEquals(labels("chrome"), nodes.get("slave2"));
+        assertFalse(new File(file.getPath() + ".tmp").exists());
+        assertFalse(new File(file.getPath() + ".old").exists());
+    }
+
+    @Test
+    public void testCompleteCompactionIsFinished() throws IOException {
+        InventoryJournal journal = new InventoryJournal(new File(file.getPath() + ".tmp"));
+        journal.appendPut("slave1", labels("chrome"));
+        journal.close();
+        journal = new InventoryJournal(new File(file.getPath() + ".old"));
+        journal.appendPut("slave1", labels("firefox"));
+        journal.close();
+        assertEquals(labels("chrome"), replay().get("slave1"));
+        assertFalse(new File(file.getPath() + ".old").exists());
+    }
+
+    @Test
+    public void testIncompleteCompactionIsRolledBack() throws IOException {
+        InventoryJournal journal = new InventoryJournal(file);
+        journal.appendPut("slave1", labels("firefox"));
+        journal.close();
+        RandomAccessFile tmp = new RandomAccessFile(new File(file.getPath() + ".tmp"), "rw");
+        tmp.writeInt(100);
+        tmp.close();
+        assertEquals(labels("firefox"), replay().get("slave1"));
+        assertFalse(new File(file.getPath() + ".tmp").exists());
+    }
+
+    @Test
+    public void testOldFileIsRestored() throws IOException {
+        InventoryJournal journal = new InventoryJournal(new File(file.getPath() + ".old"));
+        journal.appendPut("slave1", labels("firefox"));
+        journal.close();
+        assertEquals(labels("firefox"), replay().get("slave1"));
+        assertTrue(file.exists());
+    }
+}
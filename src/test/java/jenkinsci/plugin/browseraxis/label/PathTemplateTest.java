@@ -0,0 +1,50 @@
+package jenkinsci.plugin.browseraxis.label;
+
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Lucie Votypkova
+ */
+public class PathTemplateTest {
+
+    private Map<String, String> env() {
+        Map<String, String> env = new HashMap<String, String>();
+        env.put("HOME", "/home/user");
+        env.put("ProgramFiles", "C:\\Program Files");
+        return env;
+    }
+
+    @Test
+    public void testPathWithoutVariables() {
+        PathTemplate template = PathTemplate.compile("/usr/bin/firefox");
+        assertFalse(template.hasVariables());
+        assertEquals("/usr/bin/firefox", template.expand(env()));
+    }
+
+    @Test
+    public void testVariablesAreReplaced() {
+        PathTemplate template = PathTemplate.compile("${HOME}/firefox/${HOME}");
+        assertTrue(template.hasVariables());
+        assertEquals("/home/user/firefox//home/user", template.expand(env()));
+        assertEquals("C:\\Program Files\\Opera\\opera.exe", PathTemplate.compile("${ProgramFiles}\\Opera\\opera.exe").expand(env()));
+    }
+
+    @Test
+    public void testVariableWithoutValueIsKept() {
+        assertEquals("${UNKNOWN}/firefox", PathTemplate.compile("${UNKNOWN}/firefox").expand(env()));
+    }
+
+    @Test
+    public void testUnclosedVariableIsText() {
+        assertEquals("/home/user/${HOME", PathTemplate.compile("${HOME}/${HOME").expand(env()));
+    }
+
+    @Test
+    public void testTemplateIsCompiledOnce() {
+        assertSame(PathTemplate.compile("${HOME}/chrome"), PathTemplate.compile("${HOME}/chrome"));
+    }
+}
@@ -0,0 +1,47 @@
+package jenkinsci.plugin.browseraxis.label;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Lucie Votypkova
+ */
+public class ProbeResultTest {
+
+    @Test
+    public void testMerge() {
+        ProbeResult result = new ProbeResult("Linux", true);
+        ProbeResult firefox = new ProbeResult("Linux", true);
+        firefox.getLabels().add("firefox");
+        firefox.getLabels().add("firefox-17");
+        firefox.getAutoVersions().put("firefox", "17");
+        firefox.getCommandResults().put("firefox", new VersionCommandRunner.Result(0, false, 10, "Mozilla Firefox 17.0"));
+        ProbeResult chrome = new ProbeResult("Linux", true);
+        chrome.getLabels().add("chrome");
+        result.merge(firefox);
+        result.merge(chrome);
+        assertEquals(3, result.getLabels().size());
+        assertTrue(result.getLabels().contains("firefox-17"));
+        assertTrue(result.getLabels().contains("chrome"));
+        assertEquals("17", result.getAutoVersions().get("firefox"));
+        assertEquals(0, result.getCommandResults().get("firefox").getExitCode());
+        assertEquals("Linux", result.getOsName());
+        assertTrue(result.isUnix());
+        assertTrue(result.isComplete());
+    }
+
+    @Test
+    public void testMergeOfTimedOutChecks() {
+        ProbeResult result = new ProbeResult("Windows 7", false);
+        ProbeResult opera = new ProbeResult("Windows 7", false);
+        opera.addTimedOutCheck();
+        opera.addTimedOutCheck();
+        ProbeResult chrome = new ProbeResult("Windows 7", false);
+        chrome.addTimedOutCheck();
+        result.merge(opera);
+        result.merge(chrome);
+        assertEquals(3, result.getTimedOutChecks());
+        assertFalse(result.isComplete());
+    }
+}
@@ -0,0 +1,35 @@
+package jenkinsci.plugin.browseraxis.label;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Lucie Votypkova
+ */
+public class TokenBucketTest {
+
+    @Test
+    public void testBurstUpToCapacity() {
+        TokenBucket bucket = new TokenBucket(0.5, 2);
+        assertTrue(bucket.tryAcquire());
+        assertTrue(bucket.tryAcquire());
+        assertFalse(bucket.tryAcquire());
+    }
+
+    @Test
+    public void testWaitTime() {
+        TokenBucket bucket = new TokenBucket(0.5, 1);
+        assertEquals(0, bucket.getWaitTime());
+        assertTrue(bucket.tryAcquire());
+        long wait = bucket.getWaitTime();
+        assertTrue("wait time " + wait, wait > 1000 && wait <= 2000);
+    }
+
+    @Test
+    public void testInvalidSettings() {
+        TokenBucket bucket = new TokenBucket(0, 0);
+        assertTrue(bucket.tryAcquire());
+        assertFalse(bucket.tryAcquire());
+    }
+}